@@ -0,0 +1,120 @@
+package org.example.chatapp.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.chatapp.ChatAppApplication;
+import org.example.chatapp.dto.request.CreateMessageRequest;
+import org.example.chatapp.service.impl.MessageService;
+import org.example.chatapp.service.impl.PendingMessage;
+import org.example.chatapp.service.impl.SenderContext;
+import org.example.chatapp.service.impl.SenderContextCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian ghi một transaction tin nhắn qua đúng code đang chạy (micro giây/transaction):
+ * MessageService.createMessages với batchSize tin trong một transaction như writer của MessageIngestService
+ * (batchSize = 1 tương đương mỗi tin một transaction). id cấp theo block từ id_generators nên Hibernate
+ * gộp các INSERT của batch thành một lệnh.
+ * Sau mỗi iteration in số statement JDBC trên mỗi tin (Hibernate statistics).
+ * Khởi động cả Spring context với cấu hình/biến môi trường của ứng dụng và GHI THẬT vào bảng messages
+ * của DATASOURCE_URL: chỉ chạy trên DB benchmark riêng. BENCH_CONVERSATION_ID / BENCH_USER_ID là một
+ * thành viên có sẵn của conversation đó.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageInsertBenchmark {
+
+    private static final String CONTENT = "Benchmark message content";
+
+    @Param({"1", "10", "50"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private MessageService messageService;
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private SenderContext sender;
+    private long messagesWritten;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ChatAppApplication.class)
+                .properties("server.port=0", "spring.jpa.properties.hibernate.generate_statistics=true")
+                .run();
+        messageService = context.getBean(MessageService.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        sender = context.getBean(SenderContextCache.class)
+                .get(Integer.valueOf(requiredEnv("BENCH_USER_ID")), Integer.valueOf(requiredEnv("BENCH_CONVERSATION_ID")));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        messagesWritten = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStatistics() {
+        if (messagesWritten > 0) {
+            System.out.printf("%n  batchSize=%d: %.2f JDBC statements/message (%d statements, %d batches)%n",
+                    batchSize, (double) statistics.getPrepareStatementCount() / messagesWritten,
+                    statistics.getPrepareStatementCount(), messagesWritten / batchSize);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int batched() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        long now = System.nanoTime();
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new PendingMessage(request(), sender, now));
+        }
+        int written = transactionTemplate.execute(status -> messageService.createMessages(batch)).size();
+        messagesWritten += written;
+        return written;
+    }
+
+    private static CreateMessageRequest request() {
+        CreateMessageRequest request = new CreateMessageRequest();
+        request.setContent(CONTENT);
+        return request;
+    }
+
+    private static String requiredEnv(String name) {
+        String value = System.getenv(name);
+        if (value == null) {
+            throw new IllegalStateException(name + " is not set");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.chatapp.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian xác thực một token trên mỗi request (micro giây/lần):
+ * - legacy: như trước đây, decode secret + dựng parser mỗi lần gọi, verify 2 lần (validate rồi lấy subject).
+ * - cold: parseClaims với key/parser dựng sẵn, cache tắt (ttl = 0) nên lần nào cũng verify HMAC.
+ * - cached: parseClaims khi token đã nằm trong cache verified token.
+ * Không cần DB hay Spring context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private String secret;
+    private String token;
+    private JwtUtils uncached;
+    private JwtUtils cached;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        secret = Encoders.BASE64.encode(Keys.secretKeyFor(SignatureAlgorithm.HS256).getEncoded());
+        token = Jwts.builder()
+                .setSubject("benchmark@example.org")
+                .claim("userId", 1)
+                .claim("role", "USER")
+                .claim("fullName", "Benchmark User")
+                .claim("avatar", "https://example.org/avatar.png")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)), SignatureAlgorithm.HS256)
+                .compact();
+        uncached = jwtUtils(0);
+        cached = jwtUtils(30000);
+        cached.parseClaims(token);
+    }
+
+    private JwtUtils jwtUtils(long verifiedCacheTtlMs) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", secret);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3600000);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheTtlMs", verifiedCacheTtlMs);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheMaxSize", 10000);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    @Benchmark
+    public String legacy() {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        Jwts.parserBuilder().setSigningKey(key).build().parse(token);
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public Claims cold() {
+        return uncached.parseClaims(token);
+    }
+
+    @Benchmark
+    public Claims cached() {
+        return cached.parseClaims(token);
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.chatapp.config;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue đầy: chờ tối đa offerTimeoutMs để có chỗ rồi mới bỏ task (đếm vào counter).
+ * Không chạy task trên thread gọi như CallerRunsPolicy, vì như vậy task vượt lên trước các task
+ * còn trong queue (mất thứ tự) và chạy trên thread request đang giữ connection DB.
+ */
+@Slf4j
+class BoundedOfferPolicy implements RejectedExecutionHandler {
+
+    private final String name;
+    private final long offerTimeoutMs;
+    private final Counter dropped;
+
+    BoundedOfferPolicy(String name, long offerTimeoutMs, Counter dropped) {
+        this.name = name;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.dropped = dropped;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (!executor.isShutdown()) {
+            try {
+                if (executor.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dropped.increment();
+        log.warn("{} queue is full, dropped a task after waiting {} ms", name, offerTimeoutMs);
+    }
+}
@@ -3,10 +3,9 @@ package org.example.chatapp.config;
 import lombok.extern.slf4j.Slf4j;
 import org.example.chatapp.exception.AppException;
 import org.example.chatapp.exception.ErrorCode;
-import org.example.chatapp.security.jwt.JwtUtils;
 import org.example.chatapp.security.model.UserDetailsImpl;
 import org.example.chatapp.security.services.UserDetailsServiceImpl;
-import org.example.chatapp.service.impl.ConversationService;
+import org.example.chatapp.service.impl.ConversationMembershipIndex;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.stomp.StompCommand;
@@ -25,16 +24,16 @@ import java.util.List;
 
 public class ConversationMembershipInterceptor implements ChannelInterceptor {
 
-    private final ConversationService conversationService;
-    private final JwtUtils jwtUtils;
+    private static final String CONVERSATION_TOPIC = "/topic/conversation/";
+    private static final String MESSAGE_SEND = "/app/message.send/";
+
+    private final ConversationMembershipIndex membershipIndex;
     private final UserDetailsServiceImpl userDetailsService;
 
     public ConversationMembershipInterceptor(
-            @org.springframework.context.annotation.Lazy ConversationService conversationService,
-            JwtUtils jwtUtils,
+            ConversationMembershipIndex membershipIndex,
             UserDetailsServiceImpl userDetailsService) {
-        this.conversationService = conversationService;
-        this.jwtUtils = jwtUtils;
+        this.membershipIndex = membershipIndex;
         this.userDetailsService = userDetailsService;
     }
 
@@ -72,14 +71,12 @@ public class ConversationMembershipInterceptor implements ChannelInterceptor {
         String token = authHeaders.get(0).replace("Bearer ", "");
 
         try {
-            if (!jwtUtils.validateJwtToken(token)) {
-                log.warn("Invalid JWT token");
+            UserDetails userDetails = userDetailsService.loadUserByToken(token);
+            if (userDetails == null) {
+                log.warn("Invalid or revoked JWT token");
                 throw new AppException(ErrorCode.UNAUTHENTICATED);
             }
 
-            String identifier = jwtUtils.getIdentifierFromJwtToken(token);
-            UserDetails userDetails = userDetailsService.loadUserByUsername(identifier);
-
             UsernamePasswordAuthenticationToken authentication =
                     new WebSocketAuthentication(
                             userDetails,
@@ -150,45 +147,45 @@ public class ConversationMembershipInterceptor implements ChannelInterceptor {
         Integer userId = ((UserDetailsImpl) auth.getPrincipal()).getId();
         String destination = accessor.getDestination();
 
-        // Check authorization for conversation topics
-        if (destination != null && destination.startsWith("/topic/conversation/")) {
-            try {
-                Integer convId = Integer.parseInt(
-                        destination.substring("/topic/conversation/".length()));
-
-                if (!conversationService.isMemberInConversation(convId, userId)) {
-                    log.warn("❌ User {} not member of conversation {}", userId, convId);
+        // Check authorization for conversation topics / sending messages
+        if (destination != null) {
+            String prefix = destination.startsWith(CONVERSATION_TOPIC) ? CONVERSATION_TOPIC
+                    : destination.startsWith(MESSAGE_SEND) ? MESSAGE_SEND
+                    : null;
+            if (prefix != null) {
+                int convId = parseId(destination, prefix.length());
+                if (convId < 0) {
+                    log.error("Invalid conversation ID in destination: {}", destination);
                     return null;
                 }
-
-                log.debug("✅ User {} authorized for conversation {}", userId, convId);
-            } catch (NumberFormatException e) {
-                log.error("Invalid conversation ID in destination: {}", destination);
-                return null;
-            }
-        }
-
-        // Check authorization for sending messages
-        if (destination != null && destination.startsWith("/app/message.send/")) {
-            try {
-                Integer convId = Integer.parseInt(
-                        destination.substring("/app/message.send/".length()));
-
-                if (!conversationService.isMemberInConversation(convId, userId)) {
-                    log.warn("❌ User {} cannot send to conversation {}", userId, convId);
+                if (!membershipIndex.isMember(convId, userId)) {
+                    log.warn("❌ User {} not member of conversation {}", userId, convId);
                     return null;
                 }
-
-                log.debug("✅ User {} authorized to send to conversation {}", userId, convId);
-            } catch (NumberFormatException e) {
-                log.error("Invalid conversation ID in destination: {}", destination);
-                return null;
             }
         }
+
         UsernamePasswordAuthenticationToken authentication = (UsernamePasswordAuthenticationToken) accessor.getUser();
         SecurityContextHolder.getContext().setAuthentication(authentication);
         accessor.setUser(authentication);
 
         return message;
     }
+
+    // Parse id ở cuối destination mà không tạo substring; -1 nếu không phải số hợp lệ
+    private static int parseId(String destination, int from) {
+        int length = destination.length();
+        if (from >= length || length - from > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < length; i++) {
+            char c = destination.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
 }
\ No newline at end of file
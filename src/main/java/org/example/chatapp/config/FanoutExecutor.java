@@ -0,0 +1,97 @@
+package org.example.chatapp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor gửi WebSocket sau commit. Chia thành nhiều lane single-thread theo key
+ * (conversationId / userId) để các event của cùng một conversation vẫn giữ đúng thứ tự.
+ * Lane đầy thì chờ tối đa offer-timeout-ms rồi bỏ event (chat.fanout.dropped), không chạy vượt thứ tự;
+ * client phát hiện event bị thiếu qua seq và lấy lại bằng GET /conversations/{id}/events.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FanoutExecutor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.websocket.fanout.lanes:4}")
+    private int laneCount;
+
+    @Value("${app.websocket.fanout.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.websocket.fanout.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+
+    private ThreadPoolExecutor[] lanes;
+    private Timer dispatchTimer;
+    private Counter dropped;
+
+    @PostConstruct
+    void init() {
+        dropped = Counter.builder("chat.fanout.dropped")
+                .description("Số event bị bỏ do lane vẫn đầy sau offer-timeout-ms")
+                .register(meterRegistry);
+        dispatchTimer = Timer.builder("chat.fanout.dispatch")
+                .description("Thời gian serialize + gửi một event")
+                .register(meterRegistry);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, "ws-fanout-" + threadIndex.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new BoundedOfferPolicy("WebSocket fan-out", offerTimeoutMs, dropped));
+        }
+
+        Gauge.builder("chat.fanout.queue.depth", this,
+                        e -> Arrays.stream(e.lanes).mapToInt(l -> l.getQueue().size()).sum())
+                .description("Số event đang chờ gửi")
+                .register(meterRegistry);
+        Gauge.builder("chat.fanout.active", this,
+                        e -> Arrays.stream(e.lanes).mapToInt(ThreadPoolExecutor::getActiveCount).sum())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public void execute(Integer key, Runnable task) {
+        ThreadPoolExecutor lane = lanes[Math.floorMod(key != null ? key : 0, lanes.length)];
+        lane.execute(() -> {
+            try {
+                dispatchTimer.record(task);
+            } catch (Exception e) {
+                log.warn("WebSocket fan-out task failed", e);
+            }
+        });
+    }
+}
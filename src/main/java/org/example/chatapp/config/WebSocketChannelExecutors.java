@@ -0,0 +1,107 @@
+package org.example.chatapp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor cho clientInboundChannel (xử lý frame từ client: @MessageMapping, interceptor)
+ * và clientOutboundChannel (ghi frame xuống từng session). Kích thước lấy từ app.websocket.inbound/outbound.*,
+ * metric: chat.websocket.{inbound|outbound}.queue.depth / .active / .rejected.
+ * Queue đầy thì chờ tối đa app.websocket.executor.offer-timeout-ms (backpressure) rồi mới bỏ frame,
+ * không chạy trên thread gọi để frame không vượt lên trước các frame đang chờ.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketChannelExecutors {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.websocket.inbound.virtual-threads:false}")
+    private boolean inboundVirtualThreads;
+
+    @Value("${app.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${app.websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+
+    @Value("${app.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${app.websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${app.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${app.websocket.executor.keep-alive-seconds:60}")
+    private int keepAliveSeconds;
+
+    @Value("${app.websocket.executor.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+
+    /**
+     * Virtual thread (cần JDK 21+) phù hợp vì handler inbound chủ yếu chờ DB/JDBC.
+     * Không có queue nên chỉ đo số task đang chạy.
+     */
+    public Executor inbound() {
+        if (inboundVirtualThreads) {
+            return virtualThreads("inbound");
+        }
+        return pool("inbound", inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity);
+    }
+
+    public Executor outbound() {
+        return pool("outbound", outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity);
+    }
+
+    // Chưa initialize: Spring đăng ký executor này làm bean của channel và tự initialize/shutdown
+    private ThreadPoolTaskExecutor pool(String channel, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        Counter rejected = Counter.builder("chat.websocket." + channel + ".rejected")
+                .description("Số task bị bỏ do queue vẫn đầy sau offer-timeout-ms")
+                .register(meterRegistry);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(Math.max(corePoolSize, maxPoolSize));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(keepAliveSeconds);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setRejectedExecutionHandler(
+                new BoundedOfferPolicy("WebSocket " + channel + " channel", offerTimeoutMs, rejected));
+
+        Gauge.builder("chat.websocket." + channel + ".queue.depth", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Số frame đang chờ trong queue của channel")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket." + channel + ".active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket." + channel + ".pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .register(meterRegistry);
+        return executor;
+    }
+
+    private Executor virtualThreads(String channel) {
+        VirtualThreadTaskExecutor delegate = new VirtualThreadTaskExecutor("ws-" + channel + "-");
+        AtomicInteger active = new AtomicInteger();
+        Gauge.builder("chat.websocket." + channel + ".active", active, AtomicInteger::get).register(meterRegistry);
+        return task -> delegate.execute(() -> {
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+    }
+}
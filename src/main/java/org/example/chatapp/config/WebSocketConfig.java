@@ -2,15 +2,19 @@ package org.example.chatapp.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.converter.DefaultContentTypeResolver;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 import java.util.List;
 
@@ -22,10 +26,66 @@ import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final ConversationMembershipInterceptor membershipInterceptor;
+    private final WebSocketChannelExecutors channelExecutors;
+
+    // Client đọc chậm: quá thời gian gửi hoặc buffer chờ gửi quá giới hạn thì đóng session
+    @Value("${app.websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${app.websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${app.websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    // simple: broker trong RAM (một instance); relay: chuyển tiếp tới STOMP broker ngoài (RabbitMQ, ActiveMQ Artemis...)
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${app.websocket.broker.relay-host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.broker.relay-port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.broker.client-login:guest}")
+    private String clientLogin;
+
+    @Value("${app.websocket.broker.client-passcode:guest}")
+    private String clientPasscode;
+
+    @Value("${app.websocket.broker.system-login:guest}")
+    private String systemLogin;
+
+    @Value("${app.websocket.broker.system-passcode:guest}")
+    private String systemPasscode;
+
+    @Value("${app.websocket.broker.virtual-host:}")
+    private String virtualHost;
+
+    // Relay chỉ đồng bộ frame STOMP. Các cache/trạng thái trong RAM (ConversationMembershipIndex, SenderContextCache,
+    // HiddenMessageCache, RecentMessageCache, PresenceService, ConversationEventLog) chưa được invalidate giữa các instance,
+    // và id tin nhắn cấp theo block ở từng instance thì không còn tăng theo thứ tự gửi,
+    // nên relay chưa được hỗ trợ: chỉ khởi động khi chủ động chấp nhận dữ liệu cũ trên instance khác
+    @Value("${app.websocket.broker.relay-allow-unsynchronized-caches:false}")
+    private boolean relayAllowUnsynchronizedCaches;
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(membershipInterceptor);
+        registration.executor(channelExecutors.inbound());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutors.outbound());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
     }
 
     @Override
@@ -37,7 +97,30 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            if (!relayAllowUnsynchronizedCaches) {
+                throw new IllegalStateException("app.websocket.broker.mode=relay is not supported yet: in-memory caches "
+                        + "(membership index, sender context, hidden/recent messages, presence, event log) are not "
+                        + "invalidated across instances and message ids are allocated in per-instance blocks. Set app.websocket.broker.relay-allow-unsynchronized-caches=true "
+                        + "to start anyway");
+            }
+            StompBrokerRelayRegistration relay = registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(clientLogin)
+                    .setClientPasscode(clientPasscode)
+                    .setSystemLogin(systemLogin)
+                    .setSystemPasscode(systemPasscode)
+                    // /user/... của user đang kết nối ở node khác: broadcast để node đó tự resolve session
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    // Đồng bộ SimpUserRegistry giữa các node
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (StringUtils.hasText(virtualHost)) {
+                relay.setVirtualHost(virtualHost);
+            }
+        } else {
+            registry.enableSimpleBroker("/topic", "/queue");
+        }
         registry.setUserDestinationPrefix("/user");
     }
 
@@ -16,6 +16,7 @@ import org.example.chatapp.exception.AppException;
 import org.example.chatapp.exception.ErrorCode;
 import org.example.chatapp.security.jwt.JwtUtils;
 import org.example.chatapp.security.model.UserDetailsImpl;
+import org.example.chatapp.security.services.TokenRevocationService;
 import org.example.chatapp.service.enums.VerificationCodeEnum;
 import org.example.chatapp.service.impl.OAuthService;
 import org.example.chatapp.service.impl.RefreshTokenService;
@@ -55,6 +56,7 @@ public class AuthController {
     private final RefreshTokenService refreshTokenService;
     private final OAuthService oAuthService;
     private final VerificationCodeService verificationCodeService;
+    private final TokenRevocationService tokenRevocationService;
 
 
     // ===== LOGIN =====
@@ -233,6 +235,8 @@ public class AuthController {
                     .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
             refreshTokenService.deleteByUserId(user.getUserId());
+            // Access token là stateless nên phải thu hồi bằng mốc tokens_valid_after
+            tokenRevocationService.revokeAll(user.getUserId());
             SecurityContextHolder.clearContext();
 
 
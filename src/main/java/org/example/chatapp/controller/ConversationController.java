@@ -10,6 +10,8 @@ import org.example.chatapp.dto.response.ApiResponse;
 import org.example.chatapp.dto.response.ConversationResponse;
 import org.example.chatapp.security.model.UserDetailsImpl;
 import org.example.chatapp.service.impl.ConversationService;
+import org.example.chatapp.service.impl.SidebarSnapshotCache;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -23,6 +25,7 @@ import java.util.List;
 public class ConversationController {
 
     private final ConversationService conversationService;
+    private final SidebarSnapshotCache sidebarSnapshotCache;
 
     @PostMapping
     public ResponseEntity<String> createConversation(
@@ -75,8 +78,13 @@ public class ConversationController {
     @GetMapping("/user/me")
     public ResponseEntity<ApiResponse> getMyConversations(
             @AuthenticationPrincipal UserDetailsImpl principal) {
-        List<ConversationResponse> conversations = conversationService.getConversationsByUserId(principal.getId());
-        return ResponseEntity.ok().body(ApiResponse.builder().data(conversations).build());
+        SidebarSnapshotCache.Snapshot snapshot = sidebarSnapshotCache.get(principal.getId(),
+                () -> conversationService.getConversationsByUserId(principal.getId()));
+        // Có ETag trong ResponseEntity: Spring tự so với If-None-Match và trả 304 không kèm body
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(ApiResponse.builder().data(snapshot.getConversations()).build());
     }
     @GetMapping("/{conversationId}")
     public ResponseEntity<ApiResponse> getConversationInfo(
@@ -101,12 +109,26 @@ public class ConversationController {
     @GetMapping("/workspace/{workspaceId}/public")
     public ResponseEntity<ApiResponse> getPublicChannels(
             @PathVariable Integer workspaceId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
             @AuthenticationPrincipal UserDetailsImpl userDetails
     ) {
-        List<ConversationResponse> channels = conversationService.getPublicChannelsToJoin(workspaceId, userDetails.getId());
+        List<ConversationResponse> channels = conversationService.getPublicChannelsToJoin(workspaceId, userDetails.getId(), q, page, size);
         return ResponseEntity.ok().body(ApiResponse.builder().data(channels).build());
     }
 
+    @GetMapping("/{conversationId}/events")
+    public ResponseEntity<ApiResponse> getEventsSince(
+            @PathVariable Integer conversationId,
+            @RequestParam(defaultValue = "0") long since,
+            @AuthenticationPrincipal UserDetailsImpl principal
+    ) {
+        return ResponseEntity.ok().body(ApiResponse.builder()
+                .data(conversationService.getEventsSince(conversationId, principal.getId(), since))
+                .build());
+    }
+
     @PostMapping("/{conversationId}/join")
     public ResponseEntity<ApiResponse> joinChannel(
             @PathVariable Integer conversationId,
@@ -6,12 +6,15 @@ import org.example.chatapp.dto.request.MessageUpdateRequest;
 import org.example.chatapp.dto.response.ApiResponse;
 import org.example.chatapp.dto.response.MessageResponse;
 import org.example.chatapp.dto.response.MessageSearchResponse;
-import org.example.chatapp.entity.ConversationMember;
+import org.example.chatapp.dto.response.MessageWindowResponse;
 import org.example.chatapp.exception.AppException;
 import org.example.chatapp.exception.ErrorCode;
 import org.example.chatapp.security.model.UserDetailsImpl;
 import org.example.chatapp.service.impl.ConversationService;
+import org.example.chatapp.service.impl.MessageIngestService;
 import org.example.chatapp.service.impl.MessageService;
+import org.example.chatapp.service.impl.SenderContext;
+import org.example.chatapp.service.impl.SenderContextCache;
 import org.example.chatapp.ultis.PrincipalCast;
 import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
@@ -30,8 +33,10 @@ import java.security.Principal;
 public class MessageController {
 
     private final MessageService messageService;
+    private final MessageIngestService messageIngestService;
     private final SimpMessagingTemplate messagingTemplate;
     private final ConversationService conversationService;
+    private final SenderContextCache senderContextCache;
 //    private final MessageInteractionService messageInteractionService;
 
     @MessageMapping("/message.send/{conversationId}")
@@ -48,8 +53,8 @@ public class MessageController {
 
         Integer userId =PrincipalCast.castUserIdFromPrincipal(principal);
 
-        ConversationMember conversationMember = conversationService.findMemberByUserId(userId, conversationId);
-        messageService.createMessage(request, conversationMember.getId(),conversationId, request.getParentMessageId());
+        SenderContext sender = senderContextCache.get(userId, conversationId);
+        messageIngestService.submit(request, sender);
     }
     @MessageMapping()
 
@@ -68,6 +73,26 @@ public class MessageController {
         return ResponseEntity.ok().body(ApiResponse.builder().data(messageResponses).build());
     }
 
+    /**
+     * Lấy lịch sử tin nhắn theo cursor (không đếm tổng số, không OFFSET).
+     * Dùng beforeCursor/afterCursor trong response cho lần tải tiếp theo.
+     */
+    @GetMapping("/conversation/{conversationId}/history")
+    public ResponseEntity<ApiResponse> getMessageHistory(
+            @PathVariable Integer conversationId,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(required = false) Integer after,
+            @RequestParam(defaultValue = "15") int size,
+            @AuthenticationPrincipal UserDetailsImpl userDetails
+    ) {
+        if (!conversationService.isMemberInConversation(conversationId, userDetails.getId()))
+            throw new AppException(ErrorCode.ACCESS_DENIED);
+
+        MessageWindowResponse window = messageService.getMessageHistory(
+                conversationId, userDetails.getId(), before, after, size);
+        return ResponseEntity.ok().body(ApiResponse.builder().data(window).build());
+    }
+
     /**
      * Lấy page chứa tin nhắn cụ thể (để navigate đến tin nhắn reply gốc).
      * Response giống hệt endpoint lấy danh sách tin nhắn, nhưng page được tính toán tự động.
@@ -82,6 +107,20 @@ public class MessageController {
         return ResponseEntity.ok().body(ApiResponse.builder().data(messageResponses).build());
     }
 
+    /**
+     * Lấy size tin nhắn trước và size tin nhắn sau tin nhắn cần nhảy tới.
+     * Dùng beforeCursor/afterCursor với endpoint /history để mở rộng cửa sổ.
+     */
+    @GetMapping("/{messageId}/window")
+    public ResponseEntity<ApiResponse> getMessageWindow(
+            @PathVariable Integer messageId,
+            @RequestParam(defaultValue = "15") int size,
+            @AuthenticationPrincipal UserDetailsImpl userDetails
+    ) {
+        MessageWindowResponse window = messageService.getMessageWindow(messageId, userDetails.getId(), size);
+        return ResponseEntity.ok().body(ApiResponse.builder().data(window).build());
+    }
+
     @PatchMapping("/{id}")
     public ResponseEntity<?> updateMessage(@PathVariable Integer id, @RequestBody MessageUpdateRequest request, @AuthenticationPrincipal UserDetailsImpl userDetails) {
         messageService.updateMessage(id,userDetails.getId(),request);
@@ -117,6 +156,23 @@ public class MessageController {
                 .build());
     }
 
+    /**
+     * Xóa toàn bộ lịch sử conversation ở phía tôi (người khác vẫn thấy)
+     */
+    @DeleteMapping("/conversation/{conversationId}/history")
+    public ResponseEntity<?> clearHistoryForMe(
+            @PathVariable Integer conversationId,
+            @AuthenticationPrincipal UserDetailsImpl userDetails
+    ) {
+        if(!conversationService.isMemberInConversation(conversationId,userDetails.getId()))
+            throw new AppException(ErrorCode.ACCESS_DENIED);
+
+        messageService.clearHistoryForMe(conversationId, userDetails.getId());
+        return ResponseEntity.ok().body(ApiResponse.builder()
+                .message("Lịch sử trò chuyện đã được xóa ở phía bạn")
+                .build());
+    }
+
     @GetMapping("/{messageId}/thread")
     public ResponseEntity<ApiResponse> getThreadMessages(
             @PathVariable Integer messageId,
@@ -128,6 +184,19 @@ public class MessageController {
         return ResponseEntity.ok().body(ApiResponse.builder().data(messages).build());
     }
 
+    @GetMapping("/{messageId}/thread/history")
+    public ResponseEntity<ApiResponse> getThreadHistory(
+            @PathVariable Integer messageId,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(required = false) Integer after,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+
+        MessageWindowResponse window = messageService.getThreadHistory(
+                messageId, userDetails.getId(), before, after, size);
+        return ResponseEntity.ok().body(ApiResponse.builder().data(window).build());
+    }
+
     /**
      * Tìm kiếm tin nhắn theo từ khóa trong conversation
      */
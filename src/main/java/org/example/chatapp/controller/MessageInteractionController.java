@@ -6,12 +6,15 @@ import org.example.chatapp.dto.request.PinRequest;
 import org.example.chatapp.dto.request.ReactMessageRequest;
 import org.example.chatapp.dto.response.MessageInteractionResponse;
 import org.example.chatapp.entity.Attachment;
+import org.example.chatapp.security.model.UserDetailsImpl;
 import org.example.chatapp.service.impl.MessageInteractionService;
 import org.example.chatapp.service.impl.MessageService;
+import org.example.chatapp.service.impl.TypingService;
 import org.example.chatapp.service.impl.WebSocketService;
 import org.example.chatapp.ultis.PrincipalCast;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -39,11 +42,12 @@ public class MessageInteractionController {
     private final MessageService messageService;
     private final WebSocketService webSocketService;
     private final FileService fileService;
+    private final TypingService typingService;
 
     @MessageMapping("/conversation/typing")
     public void typingStatus(TypingRequest request, Principal principal) {
         Integer userId = PrincipalCast.castUserIdFromPrincipal(principal);
-        messageInteractionService.sendTypingStatus(request.getConversationId(), request.getIsTyping(), userId);
+        typingService.onTyping(request.getConversationId(), userId, Boolean.TRUE.equals(request.getIsTyping()));
     }
 
     @MessageMapping("/msg/react")
@@ -81,13 +85,14 @@ public class MessageInteractionController {
     }
 
     @PostMapping("/attachments")
-    public ResponseEntity<ApiResponse> uploadAttachments(@RequestParam("files") List<MultipartFile> files) {
+    public ResponseEntity<ApiResponse> uploadAttachments(@RequestParam("files") List<MultipartFile> files,
+                                                         @AuthenticationPrincipal UserDetailsImpl userDetails) {
         try {
             if (files.isEmpty()) {
                 return ResponseEntity.ok().body(ApiResponse.builder().message("No files uploaded").build());
             }
 
-            List<Integer> ids = fileService.uploadAttachments(files);
+            List<Integer> ids = fileService.uploadAttachments(files, userDetails.getId());
 
             return ResponseEntity.ok().body(ApiResponse.builder().data(ids).build());
         } catch (Exception e) {
@@ -5,7 +5,10 @@ import org.example.chatapp.dto.request.UpdateProfileRequest;
 import org.example.chatapp.dto.response.ApiResponse;
 import org.example.chatapp.dto.response.UserResponse;
 import org.example.chatapp.entity.User;
+import org.example.chatapp.exception.AppException;
+import org.example.chatapp.exception.ErrorCode;
 import org.example.chatapp.security.model.UserDetailsImpl;
+import org.example.chatapp.service.impl.PresenceService;
 import org.example.chatapp.service.impl.UserService;
 import org.example.chatapp.service.enums.RoleEnum;
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,18 +23,23 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
+    private static final int MAX_PRESENCE_USERS = 500;
+
     private final UserService userService;
+    private final PresenceService presenceService;
     @Value("${APP_SITE_URL}")
     private String siteUrl;
 
     // Constructor injection
-    public UserController(UserService userService) {
+    public UserController(UserService userService, PresenceService presenceService) {
         this.userService = userService;
+        this.presenceService = presenceService;
     }
 
     // POST /users → tạo user mới
@@ -78,6 +86,17 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    // GET /users/presence?ids=1,2,3 → trạng thái ONLINE/OFFLINE của các user có chung conversation với mình
+    @GetMapping("/presence")
+    public ResponseEntity<ApiResponse> getPresence(@AuthenticationPrincipal UserDetailsImpl principal,
+                                                   @RequestParam("ids") List<Integer> ids) {
+        if (ids.size() > MAX_PRESENCE_USERS) {
+            throw new AppException(ErrorCode.PRESENCE_TOO_MANY_USERS);
+        }
+        Map<Integer, String> presence = presenceService.snapshotFor(principal.getId(), ids);
+        return ResponseEntity.ok().body(ApiResponse.builder().data(presence).build());
+    }
+
     // GET /users/me → lấy profile của user hiện tại
     @GetMapping("/me")
     public ResponseEntity<UserResponse> getMyProfile(@AuthenticationPrincipal UserDetailsImpl principal) {
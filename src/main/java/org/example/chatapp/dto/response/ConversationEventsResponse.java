@@ -0,0 +1,34 @@
+package org.example.chatapp.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationEventsResponse {
+    // Seq mới nhất của conversation, client lưu lại để resume lần sau
+    private Long latestSeq;
+
+    // true: khoảng bị lỡ không còn trong replay log, client phải tải lại toàn bộ (getLatestMessages)
+    private Boolean reset;
+
+    // Theo thứ tự seq tăng dần, payload giống hệt frame đã gửi qua /topic/conversation/{id}
+    private List<Event> events;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Event {
+        private Long seq;
+        // JSON đã lưu trong replay log, trả nguyên văn
+        @JsonRawValue
+        private String payload;
+    }
+}
@@ -7,7 +7,7 @@ import lombok.NoArgsConstructor;
 import org.example.chatapp.service.enums.ConversationEnum;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class ConversationResponse {
@@ -10,7 +10,7 @@ import org.example.chatapp.service.enums.MessageStatus;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MessageResponse {
@@ -0,0 +1,28 @@
+package org.example.chatapp.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageWindowResponse {
+    // Tin mới nhất đứng đầu, giống thứ tự của các endpoint Page
+    private List<MessageResponse> messages;
+
+    // Tin nhắn làm mốc khi lấy context quanh một tin nhắn (null với lịch sử thường)
+    private Integer anchorId;
+
+    // Truyền vào ?before= để tải các tin nhắn cũ hơn
+    private Integer beforeCursor;
+    // Truyền vào ?after= để tải các tin nhắn mới hơn
+    private Integer afterCursor;
+
+    private Boolean hasMoreBefore;
+    private Boolean hasMoreAfter;
+}
@@ -13,7 +13,10 @@ import lombok.*;
 public class Attachment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "attachments_id_gen")
+    @TableGenerator(name = "attachments_id_gen", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "attachments", allocationSize = 50)
     private Integer id;
 
 
@@ -32,4 +35,8 @@ public class Attachment {
 
     @Column(name = "uploaded_at")
     private Long uploadedAt;
+
+    // user_id người upload; attachment chưa gắn message chỉ được gắn bởi chính người này
+    @Column(name = "uploaded_by")
+    private Integer uploadedBy;
 }
@@ -31,6 +31,14 @@ public class Conversation {
     @Column(name = "created_at")
     private Long createdAt; // created_at BIGINT
 
+    // Chỉ ghi bằng ConversationRepository.refreshMemberCount, save() không ghi đè
+    @Column(name = "member_count", nullable = false, insertable = false, updatable = false)
+    private Integer memberCount = 0;
+
+    // Số tin chưa thu hồi, chỉ ghi bằng ConversationMessageCounter (delta theo batch) và UnreadCounterReconciler
+    @Column(name = "message_count", nullable = false, insertable = false, updatable = false)
+    private Integer messageCount = 0;
+
     // --- Mối quan hệ (Relationships) ---
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -3,10 +3,13 @@ package org.example.chatapp.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
 import org.example.chatapp.service.enums.ConversationRoleEnum;
 
 @Entity
 @Data
+// Chỉ UPDATE cột thay đổi để save() không ghi đè read_count được cập nhật bằng bulk update
+@DynamicUpdate
 @Table(name = "conversation_members")
 public class ConversationMember {
     @Id
@@ -39,4 +42,12 @@ public class ConversationMember {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "last_read_message_id")
     private Message lastReadMessage;
+
+    // Số tin đã tính là đã đọc (gồm cả tin tự gửi); số tin chưa đọc = conversations.message_count - read_count
+    @Column(name = "read_count", nullable = false)
+    private Integer readCount = 0;
+
+    // "Xóa lịch sử phía tôi": ẩn mọi tin nhắn có id < giá trị này
+    @Column(name = "hidden_before_message_id")
+    private Integer hiddenBeforeMessageId;
 }
@@ -13,7 +13,13 @@ import java.util.Set;
 @Table(name = "messages")
 public class Message {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Cấp theo block như Attachment/MessageMention/MessageReaction để Hibernate gộp INSERT thành batch.
+    // id là khóa sort của cursor, unread và mốc xóa lịch sử: chỉ tăng theo thứ tự gửi khi chạy một instance
+    // (relay bị chặn trong WebSocketConfig); sau restart block mới bắt đầu từ next_val nên vẫn lớn hơn id cũ
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "messages_id_gen")
+    @TableGenerator(name = "messages_id_gen", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "messages", allocationSize = 50)
     private Integer id;
 
     @Column(name = "content", nullable = false, length = 4000)
@@ -13,7 +13,10 @@ import lombok.*;
 public class MessageMention {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "message_mentions_id_gen")
+    @TableGenerator(name = "message_mentions_id_gen", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "message_mentions", allocationSize = 50)
     private Integer id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -13,7 +13,10 @@ import lombok.*;
 public class MessageReaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "message_reactions_id_gen")
+    @TableGenerator(name = "message_reactions_id_gen", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "message_reactions", allocationSize = 50)
     private Integer id;
 
     // message_id -> messages.id
@@ -55,6 +55,10 @@ public class User {
     @Column(name = "avatar", length = 512)
     private String avatar;
 
+    // Access token phát hành trước mốc này (epoch ms) không còn hợp lệ
+    @Column(name = "tokens_valid_after")
+    private Long tokensValidAfter;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private Set<VerificationCode> verificationCodes;
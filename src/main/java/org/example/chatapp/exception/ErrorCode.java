@@ -19,6 +19,7 @@ public enum ErrorCode {
     USER_INVALID_PASSWORD(HttpStatus.BAD_REQUEST, 1004, "Password must be at least 6 characters"),
     USER_PHONE_OR_EMAIL_EXIST(HttpStatus.BAD_REQUEST, 1005, "Phone number or email already exists"),
     FAIL_TO_VERIFY_EMAIL(HttpStatus.INTERNAL_SERVER_ERROR, 1007, "Failed to send verification email"),
+    PRESENCE_TOO_MANY_USERS(HttpStatus.BAD_REQUEST, 1008, "Too many users in one presence request"),
 
 
     // WORKSPACE ERRORS (1300 Series)
@@ -62,6 +63,8 @@ public enum ErrorCode {
 
 
     REACTION_NOT_FOUND(HttpStatus.BAD_REQUEST, 1608, "Reaction not found"),
+    MESSAGE_QUEUE_FULL(HttpStatus.SERVICE_UNAVAILABLE, 1609, "Server is busy, please resend the message"),
+    ATTACHMENT_NOT_AVAILABLE(HttpStatus.BAD_REQUEST, 1610, "Attachment not found, already used or not uploaded by you"),
 
     REFRESH_TOKEN_NOT_FOUND(HttpStatus.UNAUTHORIZED, 10000, "Refresh token not found"),
     REFRESH_TOKEN_EXPIRED(HttpStatus.UNAUTHORIZED, 10001, "Refresh token expired"),
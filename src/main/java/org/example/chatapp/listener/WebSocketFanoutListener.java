@@ -0,0 +1,67 @@
+package org.example.chatapp.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.chatapp.config.FanoutExecutor;
+import org.example.chatapp.service.event.ConversationEvent;
+import org.example.chatapp.service.event.UserNotificationEvent;
+import org.example.chatapp.service.impl.ConversationEventLog;
+import org.example.chatapp.service.impl.WebSocketService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Chỉ gửi WebSocket sau khi transaction commit, trên FanoutExecutor, để không giữ
+ * connection DB trong lúc serialize/gửi và không broadcast dữ liệu bị rollback.
+ * Publish ngoài transaction (fallbackExecution) thì gửi ngay.
+ * Event của conversation được gán seq ngay trên lane của conversation (header seq / prev-seq)
+ * và lưu vào ConversationEventLog để client replay sau khi reconnect.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketFanoutListener {
+
+    private final WebSocketService webSocketService;
+    private final FanoutExecutor fanoutExecutor;
+    private final ConversationEventLog eventLog;
+    private final ObjectMapper objectMapper;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onConversationEvent(ConversationEvent event) {
+        Integer conversationId = event.getConversationId();
+        fanoutExecutor.execute(conversationId, () -> {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(event.getPayload());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot serialize event of conversation " + conversationId, e);
+            }
+            Map<String, Object> headers = new HashMap<>();
+            try {
+                ConversationEventLog.Position position = eventLog.append(conversationId, json);
+                headers.put("seq", position.getSeq());
+                if (position.getPrevSeq() != ConversationEventLog.UNKNOWN_SEQ) {
+                    headers.put("prev-seq", position.getPrevSeq());
+                }
+            } catch (RuntimeException e) {
+                // Không cấp được seq (DB lỗi lúc giữ khối seq mới): vẫn gửi frame, chỉ không replay được
+                log.warn("Cannot assign event seq for conversation {}: {}", conversationId, e.getMessage());
+            }
+            webSocketService.sendJsonToConversation(conversationId, json.getBytes(StandardCharsets.UTF_8), headers);
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserNotification(UserNotificationEvent event) {
+        fanoutExecutor.execute(event.getUserId(),
+                () -> webSocketService.sendNotification(event.getUserId(), event.getPayload()));
+    }
+}
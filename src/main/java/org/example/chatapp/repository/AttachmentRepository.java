@@ -1,10 +1,27 @@
 package org.example.chatapp.repository;
 
 import org.example.chatapp.entity.Attachment;
+import org.example.chatapp.entity.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface AttachmentRepository extends JpaRepository<Attachment,Integer> {
 
+    List<Attachment> findAllByMessage_IdIn(Collection<Integer> messageIds);
+
+    // Gắn cả danh sách attachment vào message bằng một UPDATE; chỉ nhận attachment chưa gắn và do chính user upload.
+    // flushAutomatically để INSERT message chạy trước (FK message_id)
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Attachment a SET a.message = :message " +
+           "WHERE a.id IN :ids AND a.message IS NULL AND a.uploadedBy = :userId")
+    int claimForMessage(@Param("message") Message message,
+                        @Param("ids") Collection<Integer> ids,
+                        @Param("userId") Integer userId);
 }
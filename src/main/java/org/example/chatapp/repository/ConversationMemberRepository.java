@@ -5,6 +5,7 @@ import org.example.chatapp.entity.ConversationMember;
 import org.example.chatapp.entity.User;
 import org.example.chatapp.service.enums.ConversationRoleEnum;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,13 +21,10 @@ public interface ConversationMemberRepository extends JpaRepository<Conversation
     Optional<ConversationMember> findConversationMemberByUser_UserId(Integer userUserId);
     Optional<ConversationMember> findByConversation_IdAndUser_UserId(Integer conversationId, Integer userUserId);
 
-    @Query(
-        "SELECT cm FROM ConversationMember cm " +
-        "JOIN FETCH cm.user " +
-        "WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId")
-    Optional<ConversationMember> findByConversationIdAndUserIdWithUser(
-        @Param("conversationId") Integer conversationId,
-        @Param("userId") Integer userId);
+    @Query("SELECT cm FROM ConversationMember cm JOIN FETCH cm.user " +
+           "WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId")
+    Optional<ConversationMember> findWithUser(@Param("conversationId") Integer conversationId,
+                                              @Param("userId") Integer userId);
 
     ConversationMember getConversationMembersById(Integer id);
 
@@ -41,5 +39,73 @@ public interface ConversationMemberRepository extends JpaRepository<Conversation
     
     int countByConversation_Id(Integer conversationId);
 
-    List<ConversationMember> findAllByConversation_IdInAndRoleNot(List<Integer> conversationIds, ConversationRoleEnum conversationRoleEnum);
+    @Query("SELECT cm.user.userId FROM ConversationMember cm " +
+           "WHERE cm.conversation.id = :conversationId " +
+           "AND (cm.role IS NULL OR cm.role <> org.example.chatapp.service.enums.ConversationRoleEnum.DELETED)")
+    List<Integer> findActiveUserIds(@Param("conversationId") Integer conversationId);
+
+    @Query("SELECT cm.conversation.id FROM ConversationMember cm " +
+           "WHERE cm.user.userId = :userId " +
+           "AND (cm.role IS NULL OR cm.role <> org.example.chatapp.service.enums.ConversationRoleEnum.DELETED)")
+    List<Integer> findActiveConversationIds(@Param("userId") Integer userId);
+
+    // Người còn lại trong các DM của user (kèm User để lấy tên/avatar)
+    @Query("SELECT cm FROM ConversationMember cm JOIN FETCH cm.user " +
+           "WHERE cm.conversation.id IN :conversationIds " +
+           "AND cm.user.userId <> :userId " +
+           "AND cm.role <> org.example.chatapp.service.enums.ConversationRoleEnum.DELETED")
+    List<ConversationMember> findPeersWithUser(@Param("conversationIds") List<Integer> conversationIds,
+                                               @Param("userId") Integer userId);
+
+    // Tin bị thu hồi (message_count giảm 1): trừ read_count của những ai đã tính tin đó là đã đọc,
+    // tức người gửi và người đã đọc tới tin đó
+    @Modifying
+    @Query("UPDATE ConversationMember cm SET cm.readCount = cm.readCount - 1 " +
+           "WHERE cm.conversation.id = :conversationId " +
+           "AND (cm.user.userId = :senderId OR cm.lastReadMessage.id >= :messageId)")
+    int revokeReadCount(@Param("conversationId") Integer conversationId,
+                        @Param("senderId") Integer senderId,
+                        @Param("messageId") Integer messageId);
+
+    // Đặt mốc xóa lịch sử (chỉ tiến lên), đánh dấu đã đọc tới beforeId - 1 và cộng vào read_count số tin của người khác
+    // nằm giữa mốc đọc cũ và mốc mới. MySQL gán SET từ trái sang phải nên read_count phải đứng trước last_read_message_id.
+    // Không đọc conversations.message_count (có thể còn delta chưa flush)
+    @Modifying
+    @Query(value = "UPDATE conversation_members cm " +
+           "SET cm.read_count = cm.read_count + (SELECT COUNT(*) FROM messages m " +
+           "                                     WHERE m.conversation_id = cm.conversation_id " +
+           "                                     AND m.id > COALESCE(cm.last_read_message_id, 0) " +
+           "                                     AND m.id < :beforeId " +
+           "                                     AND m.sender_id <> cm.user_id " +
+           "                                     AND m.status <> 'REVOKED'), " +
+           "    cm.hidden_before_message_id = GREATEST(COALESCE(cm.hidden_before_message_id, 0), :beforeId), " +
+           "    cm.last_read_message_id = GREATEST(COALESCE(cm.last_read_message_id, 0), :beforeId - 1) " +
+           "WHERE cm.conversation_id = :conversationId AND cm.user_id = :userId", nativeQuery = true)
+    int clearHistory(@Param("conversationId") Integer conversationId,
+                     @Param("userId") Integer userId,
+                     @Param("beforeId") Integer beforeId);
+
+    // read_count = số tin chưa thu hồi mà member đã đọc (id <= last_read_message_id) hoặc tự gửi.
+    // Tính lại cho member của các conversation có id trong [fromId, toId], chỉ những dòng đã yên từ quietSince:
+    // conversation không có tin mới/sửa/thu hồi và member không đánh dấu đã đọc sau mốc đó (delta có thể chưa flush)
+    @Modifying
+    @Query(value = "UPDATE conversation_members cm " +
+           "LEFT JOIN (SELECT cm2.id AS member_id, COUNT(m.id) AS cnt " +
+           "           FROM conversation_members cm2 " +
+           "           JOIN messages m ON m.conversation_id = cm2.conversation_id " +
+           "                          AND (m.id <= COALESCE(cm2.last_read_message_id, 0) OR m.sender_id = cm2.user_id) " +
+           "                          AND m.status <> 'REVOKED' " +
+           "           WHERE cm2.conversation_id BETWEEN :fromId AND :toId " +
+           "           GROUP BY cm2.id) r ON r.member_id = cm.id " +
+           "LEFT JOIN (SELECT m.conversation_id, MAX(GREATEST(m.created_at, COALESCE(m.updated_at, 0))) AS changed_at " +
+           "           FROM messages m WHERE m.conversation_id BETWEEN :fromId AND :toId " +
+           "           GROUP BY m.conversation_id) q ON q.conversation_id = cm.conversation_id " +
+           "SET cm.read_count = COALESCE(r.cnt, 0) " +
+           "WHERE cm.conversation_id BETWEEN :fromId AND :toId " +
+           "AND COALESCE(q.changed_at, 0) < :quietSince " +
+           "AND (cm.last_read_at IS NULL OR cm.last_read_at < :quietSince) " +
+           "AND cm.read_count <> COALESCE(r.cnt, 0)", nativeQuery = true)
+    int reconcileReadCounts(@Param("fromId") Integer fromId,
+                            @Param("toId") Integer toId,
+                            @Param("quietSince") long quietSince);
 }
@@ -1,10 +1,14 @@
 package org.example.chatapp.repository;
 
 import org.example.chatapp.entity.Conversation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,14 +16,54 @@ import java.util.Optional;
 public interface ConversationRepository extends JpaRepository<Conversation,Integer> {
     Optional<Conversation> getConversationById(Integer id);
     
+    // Anti-join theo uk_convo_user; lọc tên theo prefix trên idx_conversations_workspace_browse.
+    // Member đã rời (DELETED) vẫn thấy channel để join lại
     @Query("SELECT c FROM Conversation c " +
            "WHERE c.workspace.id = :workspaceId " +
-           "AND c.isPrivate = false " +
            "AND c.type = org.example.chatapp.service.enums.ConversationEnum.CHANNEL " +
-           "AND c.id NOT IN (SELECT m.conversation.id FROM ConversationMember m WHERE m.user.userId = :userId)")
-    List<Conversation> findPublicChannelsNotJoined(
+           "AND c.isPrivate = false " +
+           "AND c.name LIKE :namePattern ESCAPE '!' " +
+           "AND NOT EXISTS (SELECT 1 FROM ConversationMember m " +
+           "                WHERE m.conversation = c AND m.user.userId = :userId " +
+           "                AND (m.role IS NULL OR m.role <> org.example.chatapp.service.enums.ConversationRoleEnum.DELETED)) " +
+           "ORDER BY c.name, c.id")
+    Slice<Conversation> findPublicChannelsNotJoined(
             @Param("workspaceId") Integer workspaceId,
-            @Param("userId") Integer userId);
+            @Param("userId") Integer userId,
+            @Param("namePattern") String namePattern,
+            Pageable pageable);
 
     List<Conversation> findAllByWorkspaceIdIn(List<Integer> workspaceIds);
+
+    // Đếm lại số member active sau khi join/leave (tự sửa nếu lệch, không cộng dồn delta)
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE conversations c " +
+           "SET c.member_count = (SELECT COUNT(*) FROM conversation_members cm " +
+           "                      WHERE cm.conversation_id = c.id " +
+           "                      AND (cm.role IS NULL OR cm.role <> 'DELETED')) " +
+           "WHERE c.id = :conversationId", nativeQuery = true)
+    int refreshMemberCount(@Param("conversationId") Integer conversationId);
+
+    // Tính lại message_count (tin chưa thu hồi) của các conversation có id trong [fromId, toId], chỉ ghi dòng bị lệch.
+    // Conversation có tin mới/sửa/thu hồi từ quietSince được để lại: delta của tin đó có thể chưa flush
+    @Modifying
+    @Query(value = "UPDATE conversations c " +
+           "LEFT JOIN (SELECT m.conversation_id, SUM(m.status <> 'REVOKED') AS cnt, " +
+           "                  MAX(GREATEST(m.created_at, COALESCE(m.updated_at, 0))) AS changed_at " +
+           "           FROM messages m WHERE m.conversation_id BETWEEN :fromId AND :toId " +
+           "           GROUP BY m.conversation_id) m ON m.conversation_id = c.id " +
+           "SET c.message_count = COALESCE(m.cnt, 0) " +
+           "WHERE c.id BETWEEN :fromId AND :toId " +
+           "AND COALESCE(m.changed_at, 0) < :quietSince " +
+           "AND c.message_count <> COALESCE(m.cnt, 0)", nativeQuery = true)
+    int reconcileMessageCounts(@Param("fromId") Integer fromId,
+                               @Param("toId") Integer toId,
+                               @Param("quietSince") long quietSince);
+
+    @Query("SELECT MAX(c.id) FROM Conversation c")
+    Optional<Integer> findMaxId();
+
+    @Query("SELECT c.workspace.id FROM Conversation c WHERE c.id = :conversationId")
+    Optional<Integer> findWorkspaceIdById(@Param("conversationId") Integer conversationId);
 }
@@ -2,14 +2,34 @@ package org.example.chatapp.repository;
 
 import org.example.chatapp.entity.HiddenMessage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface HiddenMessageRepository extends JpaRepository<HiddenMessage, Integer> {
     
-    @org.springframework.data.jpa.repository.Query("SELECT h.message.id FROM HiddenMessage h WHERE h.user.userId = :userId")
-    List<Integer> findHiddenMessageIdsByUserId(Integer userId);
+    @Query("SELECT h.message.id FROM HiddenMessage h WHERE h.user.userId = :userId")
+    List<Integer> findHiddenMessageIdsByUserId(@Param("userId") Integer userId);
     
+    @Query("SELECT h.message.id FROM HiddenMessage h WHERE h.user.userId = :userId AND h.message.id IN :messageIds")
+    List<Integer> findHiddenMessageIdsIn(@Param("userId") Integer userId,
+                                         @Param("messageIds") Collection<Integer> messageIds);
+
     boolean existsByUser_UserIdAndMessage_Id(Integer userId, Integer messageId);
+
+    long countByUser_UserId(Integer userId);
+
+    // Dòng ẩn riêng lẻ cũ hơn mốc xóa lịch sử không còn cần thiết
+    @Modifying
+    @Query("DELETE FROM HiddenMessage h WHERE h.user.userId = :userId " +
+            "AND h.message.id < :beforeId " +
+            "AND h.message.id IN (SELECT m.id FROM Message m WHERE m.conversation.id = :conversationId)")
+    int deleteHiddenBefore(@Param("userId") Integer userId,
+                           @Param("conversationId") Integer conversationId,
+                           @Param("beforeId") Integer beforeId);
 }
@@ -2,8 +2,19 @@ package org.example.chatapp.repository;
 
 import org.example.chatapp.entity.MessageMention;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface MessageMentionRepository extends JpaRepository<MessageMention,Integer> {
+
+    @Query("SELECT mm FROM MessageMention mm " +
+           "JOIN FETCH mm.conversationMember cm " +
+           "JOIN FETCH cm.user " +
+           "WHERE mm.message.id IN :messageIds")
+    List<MessageMention> findAllWithUserByMessageIdIn(@Param("messageIds") Collection<Integer> messageIds);
 }
@@ -3,8 +3,12 @@ package org.example.chatapp.repository;
 
 import org.example.chatapp.entity.MessageReaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +18,10 @@ public interface MessageReactionRepository extends JpaRepository<MessageReaction
     Boolean existsByMessage_IdAndConversationMember_Id(Integer messageId, Integer memberId);
 
     void deleteByMessage_IdAndConversationMember_Id(Integer messageId, Integer memberId);
+
+    @Query("SELECT r FROM MessageReaction r " +
+           "JOIN FETCH r.conversationMember cm " +
+           "JOIN FETCH cm.user " +
+           "WHERE r.message.id IN :messageIds")
+    List<MessageReaction> findAllWithUserByMessageIdIn(@Param("messageIds") Collection<Integer> messageIds);
 }
@@ -3,6 +3,7 @@ package org.example.chatapp.repository;
 import org.example.chatapp.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -31,40 +32,166 @@ public interface MessageRepository extends JpaRepository<Message,Integer> {
 
     Page<Message> findByConversationIdAndThreadIsNull(Integer conversationId, Pageable pageable);
 
+    // Mốc "xóa lịch sử" (hidden_before_message_id) là subquery không tương quan: chạy một lần rồi dùng như range trên id
     @Query("SELECT m FROM Message m " +
            "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
            "WHERE m.conversation.id = :conversationId " +
            "AND m.thread IS NULL " +
-           "AND h.id IS NULL")
+           "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0)")
     Page<Message> findVisibleChannelMessages(@Param("conversationId") Integer conversationId,
                                              @Param("userId") Integer userId,
                                              Pageable pageable);
 
+    // Keyset (cursor) pagination: trả về Slice nên không chạy COUNT, sort theo id
+    @Query("SELECT m FROM Message m " +
+           "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.thread IS NULL " +
+           "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0) " +
+           "AND m.id < :beforeId")
+    Slice<Message> findVisibleChannelMessagesBefore(@Param("conversationId") Integer conversationId,
+                                                    @Param("userId") Integer userId,
+                                                    @Param("beforeId") Integer beforeId,
+                                                    Pageable pageable);
+
+    @Query("SELECT m FROM Message m " +
+           "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.thread IS NULL " +
+           "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0) " +
+           "AND m.id > :afterId")
+    Slice<Message> findVisibleChannelMessagesAfter(@Param("conversationId") Integer conversationId,
+                                                   @Param("userId") Integer userId,
+                                                   @Param("afterId") Integer afterId,
+                                                   Pageable pageable);
+
+    // Keyset không join HiddenMessage; tin đã ẩn được lọc trong RAM bằng HiddenMessageCache
+    @Query("SELECT m FROM Message m " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.thread IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0) " +
+           "AND m.id < :beforeId")
+    Slice<Message> findChannelMessagesBefore(@Param("conversationId") Integer conversationId,
+                                             @Param("userId") Integer userId,
+                                             @Param("beforeId") Integer beforeId,
+                                             Pageable pageable);
+
+    @Query("SELECT m FROM Message m " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.thread IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0) " +
+           "AND m.id > :afterId")
+    Slice<Message> findChannelMessagesAfter(@Param("conversationId") Integer conversationId,
+                                            @Param("userId") Integer userId,
+                                            @Param("afterId") Integer afterId,
+                                            Pageable pageable);
+
+    // Tail chung của conversation (không lọc theo user), dùng để warm RecentMessageCache
+    @Query("SELECT m FROM Message m " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.thread IS NULL")
+    Slice<Message> findChannelTail(@Param("conversationId") Integer conversationId, Pageable pageable);
+
+    @Query("SELECT COUNT(m) FROM Message m " +
+           "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.thread IS NULL " +
+           "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0)")
+    long countVisibleChannelMessages(@Param("conversationId") Integer conversationId,
+                                     @Param("userId") Integer userId);
+
     Page<Message> findByThreadId(Integer threadId, Pageable pageable);
 
     @Query("SELECT m FROM Message m " +
            "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
            "WHERE m.thread.id = :threadId " + 
-           "AND h.id IS NULL")
+           "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = (SELECT t.conversation.id FROM Message t WHERE t.id = :threadId) " +
+           "                    AND cm.user.userId = :userId), 0)")
     Page<Message> findVisibleThreadMessages(@Param("threadId") Integer threadId,
                                             @Param("userId") Integer userId,
                                             Pageable pageable);
 
-    @Transactional
-    @Modifying
-    @Query("UPDATE Message m SET m.threadReplyCount = m.threadReplyCount + 1 WHERE m.id = :threadId")
-    void incrementThreadReplyCount(Integer threadId);
-    
-    @Transactional
+    @Query("SELECT m FROM Message m " +
+           "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
+           "WHERE m.thread.id = :threadId " +
+           "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = (SELECT t.conversation.id FROM Message t WHERE t.id = :threadId) " +
+           "                    AND cm.user.userId = :userId), 0) " +
+           "AND m.id < :beforeId")
+    Slice<Message> findVisibleThreadMessagesBefore(@Param("threadId") Integer threadId,
+                                                   @Param("userId") Integer userId,
+                                                   @Param("beforeId") Integer beforeId,
+                                                   Pageable pageable);
+
+    @Query("SELECT m FROM Message m " +
+           "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
+           "WHERE m.thread.id = :threadId " +
+           "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = (SELECT t.conversation.id FROM Message t WHERE t.id = :threadId) " +
+           "                    AND cm.user.userId = :userId), 0) " +
+           "AND m.id > :afterId")
+    Slice<Message> findVisibleThreadMessagesAfter(@Param("threadId") Integer threadId,
+                                                  @Param("userId") Integer userId,
+                                                  @Param("afterId") Integer afterId,
+                                                  Pageable pageable);
+
+    @Query("SELECT m FROM Message m " +
+           "WHERE m.thread.id = :threadId " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = (SELECT t.conversation.id FROM Message t WHERE t.id = :threadId) " +
+           "                    AND cm.user.userId = :userId), 0) " +
+           "AND m.id < :beforeId")
+    Slice<Message> findThreadMessagesBefore(@Param("threadId") Integer threadId,
+                                            @Param("userId") Integer userId,
+                                            @Param("beforeId") Integer beforeId,
+                                            Pageable pageable);
+
+    @Query("SELECT m FROM Message m " +
+           "WHERE m.thread.id = :threadId " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = (SELECT t.conversation.id FROM Message t WHERE t.id = :threadId) " +
+           "                    AND cm.user.userId = :userId), 0) " +
+           "AND m.id > :afterId")
+    Slice<Message> findThreadMessagesAfter(@Param("threadId") Integer threadId,
+                                           @Param("userId") Integer userId,
+                                           @Param("afterId") Integer afterId,
+                                           Pageable pageable);
+
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.conversation.id = :conversationId")
+    Integer findMaxIdByConversationId(@Param("conversationId") Integer conversationId);
+
+    // Tính lại thread_reply_count từ messages.thread_id, chỉ ghi các tin gốc bị lệch.
+    // Bỏ qua thread có reply từ quietSince trở đi: delta của reply đó có thể còn nằm trong RAM của một instance
     @Modifying
-    @Query("UPDATE Message m SET m.threadReplyCount = m.threadReplyCount - 1 WHERE m.id = :threadId")
-    void decrementThreadReplyCount(Integer threadId);
+    @Query(value = "UPDATE messages m " +
+           "LEFT JOIN (SELECT r.thread_id, COUNT(*) AS cnt, MAX(r.created_at) AS last_reply_at FROM messages r " +
+           "           WHERE r.thread_id IS NOT NULL GROUP BY r.thread_id) c ON c.thread_id = m.id " +
+           "SET m.thread_reply_count = COALESCE(c.cnt, 0) " +
+           "WHERE m.thread_reply_count <> COALESCE(c.cnt, 0) " +
+           "AND (c.last_reply_at IS NULL OR c.last_reply_at < :quietSince)", nativeQuery = true)
+    int reconcileThreadReplyCounts(@Param("quietSince") Long quietSince);
 
     @Query("SELECT COUNT(m) FROM Message m " +
            "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
            "WHERE m.conversation.id = :conversationId " +
            "AND m.thread IS NULL " +
            "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0) " +
            "AND m.createdAt > :createdAt")
     Integer countVisibleMessagesAfter(@Param("conversationId") Integer conversationId,
                                    @Param("userId") Integer userId,
@@ -74,6 +201,8 @@ public interface MessageRepository extends JpaRepository<Message,Integer> {
            "LEFT JOIN HiddenMessage h ON h.message.id = m.id AND h.user.userId = :userId " +
            "WHERE m.conversation.id = :conversationId " +
            "AND h.id IS NULL " +
+           "AND m.id >= COALESCE((SELECT MAX(cm.hiddenBeforeMessageId) FROM ConversationMember cm " +
+           "                    WHERE cm.conversation.id = :conversationId AND cm.user.userId = :userId), 0) " +
            "AND m.status != org.example.chatapp.service.enums.MessageStatus.REVOKED " +
            "AND LOWER(m.content) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     Page<Message> searchMessages(@Param("conversationId") Integer conversationId,
@@ -2,8 +2,13 @@ package org.example.chatapp.repository;
 
 import org.example.chatapp.entity.PinnedMessage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface PinnedMessageRepository extends JpaRepository<PinnedMessage, Integer> {
 
@@ -13,4 +18,7 @@ public interface PinnedMessageRepository extends JpaRepository<PinnedMessage, In
     void deleteByMessage_Id(Integer messageId);
 
     long countByConversation_Id(Integer conversationId);
+
+    @Query("SELECT p.message.id FROM PinnedMessage p WHERE p.message.id IN :messageIds")
+    List<Integer> findPinnedMessageIdsIn(@Param("messageIds") Collection<Integer> messageIds);
 }
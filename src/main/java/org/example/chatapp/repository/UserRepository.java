@@ -5,9 +5,11 @@ import org.example.chatapp.service.enums.RoleEnum;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -32,4 +34,13 @@ public interface UserRepository  extends JpaRepository<User,Integer> {
     List<User> findByFullNameContainingIgnoreCaseAndUserTypeNot(@Param("name") String name, @Param("userType") RoleEnum userType);
 
     List<User> findByFullNameContainingIgnoreCase(String name);
+
+    // Rỗng nếu user không còn tồn tại
+    @Query("SELECT COALESCE(u.tokensValidAfter, 0L) FROM User u WHERE u.userId = :userId")
+    Optional<Long> findTokensValidAfter(@Param("userId") Integer userId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.tokensValidAfter = :validAfter WHERE u.userId = :userId")
+    int updateTokensValidAfter(@Param("userId") Integer userId, @Param("validAfter") Long validAfter);
 }
@@ -18,9 +18,6 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
-    @Autowired
-    private JwtUtils jwtUtils;
-
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
@@ -31,10 +28,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String identifier = jwtUtils.getIdentifierFromJwtToken(jwt);
-                if (identifier != null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(identifier);
+            if (jwt != null) {
+                UserDetails userDetails = userDetailsService.loadUserByToken(jwt);
+                if (userDetails != null) {
                     UsernamePasswordAuthenticationToken authentication =
                             new UsernamePasswordAuthenticationToken(
                                     userDetails,
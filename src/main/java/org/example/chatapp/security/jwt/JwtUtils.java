@@ -3,6 +3,8 @@ package org.example.chatapp.security.jwt;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import org.example.chatapp.entity.User;
 import org.example.chatapp.security.model.UserDetailsImpl;
 import org.slf4j.Logger;
@@ -11,8 +13,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @Component
@@ -25,7 +33,33 @@ public class JwtUtils {
     @Value("${app.jwtExpirationMs}")
     private int jwtExpirationMs;
 
+    // Token vừa verify được giữ lại ngắn hạn để reconnect/request dồn dập không phải verify HMAC lại
+    @Value("${app.jwt.verified-cache.ttl-ms:30000}")
+    private long verifiedCacheTtlMs;
 
+    @Value("${app.jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize;
+
+    // Key và parser immutable, thread-safe: decode secret một lần lúc khởi động
+    private Key signingKey;
+    private JwtParser parser;
+
+    // key là SHA-256 của token: không giữ chuỗi token trong RAM, hash/equals trên 32 byte thay vì cả chuỗi
+    private final ConcurrentHashMap<TokenDigest, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
 
     public String generateJwtToken(Authentication authentication) {
 
@@ -44,13 +78,80 @@ public class JwtUtils {
     }
 
     private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        return signingKey;
     }
 
     public String getIdentifierFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject();
+        Claims claims = parseClaims(token);
+        return claims != null ? claims.getSubject() : null;
     }
+
+    /**
+     * Verify chữ ký + hạn dùng và trả về claims trong một lần parse; null nếu token không hợp lệ.
+     */
+    public Claims parseClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        TokenDigest digest = TokenDigest.of(token);
+        VerifiedToken cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            if (now < cached.validUntil) {
+                return cached.claims;
+            }
+            verifiedTokens.remove(digest, cached);
+        }
+
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (MalformedJwtException e) {
+            logger.error("Invalid JWT token: {}", e.getMessage());
+            return null;
+        } catch (ExpiredJwtException e) {
+            logger.error("JWT token is expired: {}", e.getMessage());
+            return null;
+        } catch (UnsupportedJwtException e) {
+            logger.error("JWT token is unsupported: {}", e.getMessage());
+            return null;
+        } catch (SignatureException e) {
+            logger.error("Invalid JWT signature: {}", e.getMessage());
+            return null;
+        } catch (IllegalArgumentException e) {
+            logger.error("JWT claims string is empty: {}", e.getMessage());
+            return null;
+        }
+
+        remember(digest, claims, now);
+        return claims;
+    }
+
+    private void remember(TokenDigest digest, Claims claims, long now) {
+        long validUntil = now + verifiedCacheTtlMs;
+        if (claims.getExpiration() != null) {
+            validUntil = Math.min(validUntil, claims.getExpiration().getTime());
+        }
+        if (validUntil <= now) {
+            return;
+        }
+        if (verifiedTokens.size() >= verifiedCacheMaxSize) {
+            evict(now);
+        }
+        verifiedTokens.put(digest, new VerifiedToken(claims, validUntil));
+    }
+
+    // Bỏ token hết hạn trước, còn đầy thì bỏ bớt tới 90% max-size (không xóa sạch cache khiến mọi request verify lại)
+    private void evict(long now) {
+        verifiedTokens.values().removeIf(v -> v.validUntil <= now);
+        int target = verifiedCacheMaxSize * 9 / 10;
+        Iterator<VerifiedToken> it = verifiedTokens.values().iterator();
+        while (verifiedTokens.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
     public String generateTokenFromIdentifier(User user) {
             return Jwts.builder()
                 .setSubject(user.getPhoneNumber() != null ? user.getPhoneNumber() : user.getEmail())
@@ -65,19 +166,40 @@ public class JwtUtils {
     }
 
     public boolean validateJwtToken(String authToken) {
-        try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parse(authToken);
-            return true;
-        } catch (MalformedJwtException e) {
-            logger.error("Invalid JWT token: {}", e.getMessage());
-        } catch (ExpiredJwtException e) {
-            logger.error("JWT token is expired: {}", e.getMessage());
-        } catch (UnsupportedJwtException e) {
-            logger.error("JWT token is unsupported: {}", e.getMessage());
-        } catch (IllegalArgumentException e) {
-            logger.error("JWT claims string is empty: {}", e.getMessage());
+        return parseClaims(authToken) != null;
+    }
+
+    private static final class TokenDigest {
+        private final byte[] bytes;
+        private final int hash;
+
+        private TokenDigest(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
         }
 
-        return false;
+        private static TokenDigest of(String token) {
+            return new TokenDigest(SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TokenDigest other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class VerifiedToken {
+        private final Claims claims;
+        private final long validUntil;
+
+        private VerifiedToken(Claims claims, long validUntil) {
+            this.claims = claims;
+            this.validUntil = validUntil;
+        }
     }
 }
\ No newline at end of file
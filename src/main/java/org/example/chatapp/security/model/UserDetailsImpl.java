@@ -1,5 +1,6 @@
 package org.example.chatapp.security.model;
 
+import io.jsonwebtoken.Claims;
 import org.example.chatapp.entity.User;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -51,6 +52,28 @@ public class UserDetailsImpl implements UserDetails {
         );
     }
 
+    // build từ claims của access token (không đụng DB); token chỉ được cấp cho user đã verify
+    public static UserDetailsImpl fromClaims(Claims claims) {
+        String identifier = claims.getSubject();
+        String roleName = claims.get("role", String.class);
+        if (roleName == null) roleName = "User";
+
+        SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + roleName.toUpperCase());
+        boolean isEmail = identifier != null && identifier.contains("@");
+
+        return new UserDetailsImpl(
+                claims.get("userId", Integer.class),
+                claims.get("fullName", String.class),
+                null,
+                isEmail ? null : identifier,
+                isEmail ? identifier : null,
+                roleName,
+                claims.get("avatar", String.class),
+                Collections.singletonList(authority),
+                true
+        );
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
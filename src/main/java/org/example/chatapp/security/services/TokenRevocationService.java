@@ -0,0 +1,86 @@
+package org.example.chatapp.security.services;
+
+import org.example.chatapp.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kiểm tra access token có bị thu hồi không dựa trên users.tokens_valid_after.
+ * Mốc được cache theo userId (giới hạn số entry, hết hạn sau ttl-ms) nên request
+ * đã xác thực không đụng DB ở trạng thái ổn định; instance khác thấy thay đổi chậm tối đa ttl-ms.
+ */
+@Service
+public class TokenRevocationService {
+
+    // User không còn tồn tại: mọi token đều bị từ chối
+    private static final long USER_MISSING = Long.MAX_VALUE;
+
+    private final UserRepository userRepository;
+    private final long ttlMs;
+    private final Map<Integer, Entry> cache;
+
+    public TokenRevocationService(UserRepository userRepository,
+                                  @Value("${app.jwt.revocation-cache.ttl-ms:30000}") long ttlMs,
+                                  @Value("${app.jwt.revocation-cache.max-users:50000}") int maxUsers) {
+        this.userRepository = userRepository;
+        this.ttlMs = ttlMs;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    public boolean isRevoked(Integer userId, Date issuedAt) {
+        if (userId == null || issuedAt == null) {
+            return true;
+        }
+        return issuedAt.getTime() < validAfter(userId);
+    }
+
+    /**
+     * Thu hồi mọi access token đã phát hành của user (logout).
+     * iat trong JWT chỉ có độ chính xác giây nên mốc là đầu giây kế tiếp: token cấp trong cùng giây với logout
+     * (kể cả ngay trước logout) đều bị thu hồi; token cấp sau logout trong cùng giây đó cũng bị từ chối.
+     */
+    public void revokeAll(Integer userId) {
+        long validAfter = (System.currentTimeMillis() / 1000 + 1) * 1000;
+        userRepository.updateTokensValidAfter(userId, validAfter);
+        put(userId, validAfter);
+    }
+
+    private long validAfter(Integer userId) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(userId);
+        }
+        if (entry != null && now - entry.loadedAt < ttlMs) {
+            return entry.validAfter;
+        }
+        long loaded = userRepository.findTokensValidAfter(userId).orElse(USER_MISSING);
+        put(userId, loaded);
+        return loaded;
+    }
+
+    private void put(Integer userId, long validAfter) {
+        synchronized (cache) {
+            cache.put(userId, new Entry(validAfter, System.currentTimeMillis()));
+        }
+    }
+
+    private static final class Entry {
+        private final long validAfter;
+        private final long loadedAt;
+
+        private Entry(long validAfter, long loadedAt) {
+            this.validAfter = validAfter;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package org.example.chatapp.security.services;
 
+import io.jsonwebtoken.Claims;
 import org.example.chatapp.entity.User;
 import org.example.chatapp.repository.UserRepository;
+import org.example.chatapp.security.jwt.JwtUtils;
 import org.example.chatapp.security.model.UserDetailsImpl;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -13,10 +16,19 @@ import org.springframework.transaction.annotation.Transactional;
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final JwtUtils jwtUtils;
+    private final TokenRevocationService tokenRevocationService;
+    private final boolean claimsAuthEnabled;
 
     // constructor injection (recommended)
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  JwtUtils jwtUtils,
+                                  TokenRevocationService tokenRevocationService,
+                                  @Value("${app.jwt.claims-auth-enabled:true}") boolean claimsAuthEnabled) {
         this.userRepository = userRepository;
+        this.jwtUtils = jwtUtils;
+        this.tokenRevocationService = tokenRevocationService;
+        this.claimsAuthEnabled = claimsAuthEnabled;
     }
 
     // transactional read-only
@@ -32,4 +44,22 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return UserDetailsImpl.build(user);
     }
+
+    /**
+     * Verify access token (một lần parse) và dựng principal. Ở chế độ claims-auth chỉ kiểm tra mốc thu hồi
+     * (có cache) thay vì load User từ DB; trả về null nếu token không hợp lệ hoặc đã bị thu hồi.
+     */
+    public UserDetails loadUserByToken(String token) {
+        Claims claims = jwtUtils.parseClaims(token);
+        if (claims == null || claims.getSubject() == null) {
+            return null;
+        }
+        if (!claimsAuthEnabled) {
+            return loadUserByUsername(claims.getSubject());
+        }
+        if (tokenRevocationService.isRevoked(claims.get("userId", Integer.class), claims.getIssuedAt())) {
+            return null;
+        }
+        return UserDetailsImpl.fromClaims(claims);
+    }
 }
@@ -0,0 +1,15 @@
+package org.example.chatapp.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Event cần broadcast tới /topic/conversation/{conversationId}.
+ * Được gửi sau khi transaction commit (xem WebSocketFanoutListener).
+ */
+@Getter
+@AllArgsConstructor
+public abstract class ConversationEvent {
+    private final Integer conversationId;
+    private final Object payload;
+}
@@ -0,0 +1,10 @@
+package org.example.chatapp.service.event;
+
+/**
+ * Thành viên được thêm, xóa hoặc đổi role trong conversation.
+ */
+public class MemberChangedEvent extends ConversationEvent {
+    public MemberChangedEvent(Integer conversationId, Object payload) {
+        super(conversationId, payload);
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.chatapp.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Danh sách user vừa trở thành thành viên active (active = true) hoặc bị xóa khỏi conversation.
+ * Dùng để cập nhật các cache in-memory, không broadcast ra client.
+ */
+@Getter
+@AllArgsConstructor
+public class MembershipChangedEvent {
+    private final Integer conversationId;
+    private final List<Integer> userIds;
+    private final boolean active;
+}
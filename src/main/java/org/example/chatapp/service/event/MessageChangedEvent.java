@@ -0,0 +1,10 @@
+package org.example.chatapp.service.event;
+
+/**
+ * Tin nhắn được tạo, sửa, thu hồi hoặc pin/unpin.
+ */
+public class MessageChangedEvent extends ConversationEvent {
+    public MessageChangedEvent(Integer conversationId, Object payload) {
+        super(conversationId, payload);
+    }
+}
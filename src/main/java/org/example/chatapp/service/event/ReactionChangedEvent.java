@@ -0,0 +1,10 @@
+package org.example.chatapp.service.event;
+
+/**
+ * Reaction của tin nhắn thay đổi.
+ */
+public class ReactionChangedEvent extends ConversationEvent {
+    public ReactionChangedEvent(Integer conversationId, Object payload) {
+        super(conversationId, payload);
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.chatapp.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Notification riêng cho một user: /user/queue/notifications.
+ */
+@Getter
+@AllArgsConstructor
+public class UserNotificationEvent {
+    private final Integer userId;
+    private final Object payload;
+}
@@ -0,0 +1,13 @@
+package org.example.chatapp.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * User vừa đổi thông tin hiển thị (tên, avatar). Dùng để làm mới các cache in-memory.
+ */
+@Getter
+@AllArgsConstructor
+public class UserProfileChangedEvent {
+    private final Integer userId;
+}
@@ -0,0 +1,350 @@
+package org.example.chatapp.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.chatapp.dto.response.ConversationEventsResponse;
+import org.example.chatapp.ultis.StripedLruMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequence tăng dần theo conversation cho mọi event gửi tới /topic/conversation/{id}, cấp sau commit
+ * trên lane của conversation trong FanoutExecutor (không chạm transaction nghiệp vụ):
+ * - seq lấy từ bộ đếm trong RAM; mỗi seq-block-size event mới giữ thêm một khối seq từ conversations.event_seq
+ *   (một UPDATE autocommit), nên seq không lặp lại sau khi khởi động lại.
+ * - Mỗi event nhớ prevSeq (seq của event trước đó); client so header prev-seq với seq đã nhận để phát hiện bị lỡ.
+ * - Replay log trong RAM: max-events-per-conversation event gần nhất, LRU theo max-conversations.
+ * - persist=true: ghi thêm vào conversation_events theo batch (write-behind) để replay được phần đã rời RAM
+ *   hoặc trước khi khởi động lại; chỉ dùng khi chuỗi prevSeq nối liền, crash mất tối đa một chu kỳ flush.
+ * reset=true khi không nối được từ since tới event mới nhất hoặc khoảng lỡ dài hơn max-replay-events.
+ */
+@Slf4j
+@Component
+public class ConversationEventLog {
+
+    // Không rõ event trước (instance vừa khởi động và không có log trong DB)
+    public static final long UNKNOWN_SEQ = -1;
+
+    // LAST_INSERT_ID(expr) trả lại giá trị mới cho đúng connection này; autocommit nên row lock chỉ giữ trong câu lệnh
+    private static final String RESERVE_SQL =
+            "UPDATE conversations SET event_seq = LAST_INSERT_ID(event_seq + ?) WHERE id = ?";
+
+    private static final String LAST_PERSISTED_SQL =
+            "SELECT MAX(seq) FROM conversation_events WHERE conversation_id = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO conversation_events (conversation_id, seq, prev_seq, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String EVENTS_SQL =
+            "SELECT seq, prev_seq, payload FROM conversation_events " +
+            "WHERE conversation_id = ? AND seq > ? ORDER BY seq LIMIT ?";
+
+    private static final String PRUNE_SQL =
+            "DELETE FROM conversation_events WHERE created_at < ? LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxReplayEvents;
+    private final int maxEventsPerConversation;
+    private final int seqBlockSize;
+    private final boolean persist;
+    private final long retentionMs;
+    private final int pruneBatchSize;
+
+    // Giữ suốt vòng đời instance (vài chục byte mỗi conversation) để prevSeq luôn nối liền khi ring bị evict
+    private final ConcurrentHashMap<Integer, Sequence> sequences = new ConcurrentHashMap<>();
+    private final StripedLruMap<Integer, Ring> rings;
+    // Đầy (DB chậm/lỗi) thì bỏ event khỏi backfill: chuỗi prevSeq trong DB đứt nên replay trả reset, không sai
+    private final BlockingQueue<PersistedEvent> unpersisted;
+
+    public ConversationEventLog(JdbcTemplate jdbcTemplate,
+                                @Value("${app.event-log.max-replay-events:200}") int maxReplayEvents,
+                                @Value("${app.event-log.max-events-per-conversation:200}") int maxEventsPerConversation,
+                                @Value("${app.event-log.max-conversations:5000}") int maxConversations,
+                                @Value("${app.event-log.seq-block-size:1000}") int seqBlockSize,
+                                @Value("${app.event-log.persist:true}") boolean persist,
+                                @Value("${app.event-log.persist-queue-capacity:10000}") int persistQueueCapacity,
+                                @Value("${app.event-log.retention-ms:86400000}") long retentionMs,
+                                @Value("${app.event-log.prune-batch-size:5000}") int pruneBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxReplayEvents = maxReplayEvents;
+        this.maxEventsPerConversation = maxEventsPerConversation;
+        this.seqBlockSize = seqBlockSize;
+        this.persist = persist;
+        this.retentionMs = retentionMs;
+        this.pruneBatchSize = pruneBatchSize;
+        this.rings = new StripedLruMap<>(maxConversations);
+        this.unpersisted = new ArrayBlockingQueue<>(persistQueueCapacity);
+    }
+
+    /**
+     * Cấp seq tiếp theo và lưu payload (JSON đã encode, giống hệt frame gửi đi).
+     * Gọi trên lane của conversation trong FanoutExecutor, sau commit: thứ tự seq trùng thứ tự gửi.
+     */
+    public Position append(Integer conversationId, String json) {
+        Sequence sequence = sequences.computeIfAbsent(conversationId, id -> new Sequence());
+        Position position;
+        synchronized (sequence) {
+            if (sequence.next > sequence.limit) {
+                reserve(conversationId, sequence);
+            }
+            position = new Position(sequence.next++, sequence.last);
+            sequence.last = position.seq;
+            rings.locked(conversationId, map -> {
+                map.computeIfAbsent(conversationId, id -> new Ring(maxEventsPerConversation))
+                        .add(position.seq, position.prevSeq, json);
+                return null;
+            });
+        }
+        if (persist && !unpersisted.offer(new PersistedEvent(conversationId, position, json, System.currentTimeMillis()))) {
+            log.warn("Event log backfill queue is full, event {} of conversation {} is only kept in memory",
+                    position.seq, conversationId);
+        }
+        return position;
+    }
+
+    /**
+     * Các event có seq > since, theo thứ tự seq.
+     */
+    public ConversationEventsResponse eventsSince(Integer conversationId, long since) {
+        Sequence sequence = sequences.get(conversationId);
+        long latestSeq;
+        if (sequence != null) {
+            synchronized (sequence) {
+                latestSeq = sequence.last;
+            }
+        } else {
+            latestSeq = persist ? lastPersisted(conversationId) : UNKNOWN_SEQ;
+        }
+        if (latestSeq == UNKNOWN_SEQ) {
+            return response(0, since != 0, List.of());
+        }
+        if (since == latestSeq) {
+            return response(latestSeq, false, List.of());
+        }
+
+        List<ConversationEventsResponse.Event> events = new ArrayList<>();
+        if (ringSince(conversationId, since, events) == null && persist) {
+            // Phần đầu đã rời RAM: đọc từ DB, chỉ lấy đoạn có prevSeq nối liền từ since, phần còn lại nối tiếp từ ring
+            long connected = persistedSince(conversationId, since, events);
+            if (connected != since && connected < latestSeq && ringSince(conversationId, connected, events) == null) {
+                // Event sau connected chưa ghi xuống DB và cũng đã rời RAM
+                return response(latestSeq, true, List.of());
+            }
+        }
+        // Event cấp sau khi đọc latestSeq: client nhận qua frame hoặc lần replay sau
+        events.removeIf(e -> e.getSeq() > latestSeq);
+        if (events.isEmpty() || events.size() > maxReplayEvents
+                || events.get(events.size() - 1).getSeq() != latestSeq) {
+            return response(latestSeq, true, List.of());
+        }
+        return response(latestSeq, false, events);
+    }
+
+    // Ghi write-behind theo batch; mỗi instance chỉ ghi event do chính nó cấp
+    @Scheduled(fixedDelayString = "${app.event-log.flush-interval-ms:1000}")
+    public void flush() {
+        List<PersistedEvent> batch = new ArrayList<>();
+        while (unpersisted.drainTo(batch, 500) > 0) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, e) -> {
+                    ps.setInt(1, e.conversationId);
+                    ps.setLong(2, e.seq);
+                    if (e.prevSeq == UNKNOWN_SEQ) {
+                        ps.setNull(3, Types.BIGINT);
+                    } else {
+                        ps.setLong(3, e.prevSeq);
+                    }
+                    ps.setString(4, e.payload);
+                    ps.setLong(5, e.createdAt);
+                });
+            } catch (Exception e) {
+                // Backfill không bắt buộc: bỏ batch, replay qua khoảng này sẽ trả reset
+                log.warn("Failed to persist {} conversation events: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    // Mỗi instance đều chạy được: DELETE theo mốc thời gian, chạy trùng cũng không sao
+    @Scheduled(fixedDelayString = "${app.event-log.prune-interval-ms:600000}",
+            initialDelayString = "${app.event-log.prune-initial-delay-ms:60000}")
+    public void prune() {
+        if (!persist) {
+            return;
+        }
+        long before = System.currentTimeMillis() - retentionMs;
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PRUNE_SQL, before, pruneBatchSize);
+            total += deleted;
+        } while (deleted == pruneBatchSize);
+        if (total > 0) {
+            log.debug("Pruned {} conversation events", total);
+        }
+    }
+
+    // Giữ khối seq mới cho instance này, ngoài mọi transaction nghiệp vụ
+    private void reserve(Integer conversationId, Sequence sequence) {
+        Long reserved = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(RESERVE_SQL)) {
+                ps.setInt(1, seqBlockSize);
+                ps.setInt(2, conversationId);
+                if (ps.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+        if (reserved == null) {
+            throw new IllegalStateException("Conversation " + conversationId + " does not exist");
+        }
+        if (sequence.limit == 0) {
+            // Lần đầu trong vòng đời instance: chưa từng cấp seq nào thì event trước là 0,
+            // ngược lại là event cuối đã ghi xuống DB (nếu có)
+            if (reserved == seqBlockSize) {
+                sequence.last = 0;
+            } else {
+                sequence.last = persist ? lastPersisted(conversationId) : UNKNOWN_SEQ;
+            }
+        }
+        sequence.next = reserved - seqBlockSize + 1;
+        sequence.limit = reserved;
+    }
+
+    private long lastPersisted(Integer conversationId) {
+        Long last = jdbcTemplate.queryForObject(LAST_PERSISTED_SQL, Long.class, conversationId);
+        return last != null ? last : UNKNOWN_SEQ;
+    }
+
+    // Thêm vào events các event trong ring nối tiếp since; null nếu ring không nối được từ since
+    private List<ConversationEventsResponse.Event> ringSince(Integer conversationId, long since,
+                                                             List<ConversationEventsResponse.Event> events) {
+        return rings.locked(conversationId, map -> {
+            Ring ring = map.get(conversationId);
+            return ring != null && ring.after(since, events) ? events : null;
+        });
+    }
+
+    // Thêm vào events đoạn event trong DB nối liền từ since, trả về seq cuối cùng nối được
+    private long persistedSince(Integer conversationId, long since, List<ConversationEventsResponse.Event> events) {
+        long[] expected = {since};
+        jdbcTemplate.query(EVENTS_SQL, (RowCallbackHandler) rs -> {
+            long prevSeq = rs.getLong(2);
+            if (rs.wasNull() || prevSeq != expected[0]) {
+                return;
+            }
+            long seq = rs.getLong(1);
+            events.add(new ConversationEventsResponse.Event(seq, rs.getString(3)));
+            expected[0] = seq;
+        }, conversationId, since, maxReplayEvents + 1);
+        return expected[0];
+    }
+
+    private ConversationEventsResponse response(long latestSeq, boolean reset, List<ConversationEventsResponse.Event> events) {
+        return ConversationEventsResponse.builder()
+                .latestSeq(latestSeq)
+                .reset(reset)
+                .events(events)
+                .build();
+    }
+
+    @Getter
+    public static final class Position {
+        private final long seq;
+        // UNKNOWN_SEQ nếu không rõ event trước
+        private final long prevSeq;
+
+        private Position(long seq, long prevSeq) {
+            this.seq = seq;
+            this.prevSeq = prevSeq;
+        }
+    }
+
+    private static final class Sequence {
+        private long next = 1;
+        private long limit;
+        private long last = UNKNOWN_SEQ;
+    }
+
+    private static final class PersistedEvent {
+        private final Integer conversationId;
+        private final long seq;
+        private final long prevSeq;
+        private final String payload;
+        private final long createdAt;
+
+        private PersistedEvent(Integer conversationId, Position position, String payload, long createdAt) {
+            this.conversationId = conversationId;
+            this.seq = position.seq;
+            this.prevSeq = position.prevSeq;
+            this.payload = payload;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // Buffer vòng: ghi đè event cũ nhất khi đầy
+    private static final class Ring {
+        private final long[] seqs;
+        private final long[] prevSeqs;
+        private final String[] payloads;
+        private int head;
+        private int size;
+
+        private Ring(int capacity) {
+            this.seqs = new long[capacity];
+            this.prevSeqs = new long[capacity];
+            this.payloads = new String[capacity];
+        }
+
+        private void add(long seq, long prevSeq, String payload) {
+            int index = (head + size) % seqs.length;
+            seqs[index] = seq;
+            prevSeqs[index] = prevSeq;
+            payloads[index] = payload;
+            if (size < seqs.length) {
+                size++;
+            } else {
+                head = (head + 1) % seqs.length;
+            }
+        }
+
+        // Các event từ event có prevSeq == since tới cuối; false nếu since không còn trong ring
+        private boolean after(long since, List<ConversationEventsResponse.Event> events) {
+            for (int i = 0; i < size; i++) {
+                if (prevSeqs[(head + i) % seqs.length] == since) {
+                    for (int j = i; j < size; j++) {
+                        int index = (head + j) % seqs.length;
+                        events.add(new ConversationEventsResponse.Event(seqs[index], payloads[index]));
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
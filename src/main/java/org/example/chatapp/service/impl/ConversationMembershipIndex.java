@@ -0,0 +1,201 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.repository.ConversationMemberRepository;
+import org.example.chatapp.service.event.MembershipChangedEvent;
+import org.example.chatapp.ultis.IntSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * Index thành viên active (không tính DELETED) của conversation trong RAM:
+ * conversationId -> userIds và userId -> conversationIds.
+ * Load lazy từ DB lần đầu, sau đó cập nhật bằng MembershipChangedEvent sau commit.
+ * Lookup không cấp phát object và không đụng DB khi đã warm.
+ */
+@Component
+public class ConversationMembershipIndex {
+
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final IntSetTable members;
+    private final IntSetTable conversations;
+
+    public ConversationMembershipIndex(ConversationMemberRepository conversationMemberRepository,
+                                       @Value("${app.membership-index.max-conversations:20000}") int maxConversations,
+                                       @Value("${app.membership-index.max-users:50000}") int maxUsers) {
+        this.conversationMemberRepository = conversationMemberRepository;
+        this.members = new IntSetTable(maxConversations);
+        this.conversations = new IntSetTable(maxUsers);
+    }
+
+    public boolean isMember(int conversationId, int userId) {
+        return membersOf(conversationId).contains(userId);
+    }
+
+    public IntSet membersOf(int conversationId) {
+        IntSet cached = members.get(conversationId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = members.version();
+        IntSet loaded = IntSet.of(conversationMemberRepository.findActiveUserIds(conversationId));
+        members.putIfUnchanged(conversationId, loaded, version);
+        return loaded;
+    }
+
+    public IntSet conversationsOf(int userId) {
+        IntSet cached = conversations.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = conversations.version();
+        IntSet loaded = IntSet.of(conversationMemberRepository.findActiveConversationIds(userId));
+        conversations.putIfUnchanged(userId, loaded, version);
+        return loaded;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMembershipChanged(MembershipChangedEvent event) {
+        int conversationId = event.getConversationId();
+        for (Integer userId : event.getUserIds()) {
+            if (event.isActive()) {
+                members.update(conversationId, set -> set.with(userId));
+                conversations.update(userId, set -> set.with(conversationId));
+            } else {
+                members.update(conversationId, set -> set.without(userId));
+                conversations.update(userId, set -> set.without(conversationId));
+            }
+        }
+    }
+
+    public void evictConversation(int conversationId) {
+        members.remove(conversationId);
+    }
+
+    /**
+     * Map int -> IntSet copy-on-write: đọc qua một snapshot volatile (binary search trên mảng key),
+     * ghi thì copy mảng. Giới hạn số entry, quá giới hạn thì bỏ entry ít được đọc gần đây nhất.
+     */
+    private static final class IntSetTable {
+
+        private final int maxSize;
+        private volatile Snapshot snapshot = new Snapshot(new int[0], new IntSet[0], new long[0]);
+        private long version;
+
+        private IntSetTable(int maxSize) {
+            this.maxSize = Math.max(1, maxSize);
+        }
+
+        IntSet get(int key) {
+            Snapshot s = snapshot;
+            int index = Arrays.binarySearch(s.keys, key);
+            if (index < 0) {
+                return null;
+            }
+            // Ghi không đồng bộ, chỉ dùng để chọn entry bị evict
+            s.lastRead[index] = System.nanoTime();
+            return s.values[index];
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        // Chỉ đưa kết quả load từ DB vào nếu trong lúc load không có thay đổi membership nào
+        synchronized void putIfUnchanged(int key, IntSet value, long expectedVersion) {
+            if (version != expectedVersion) {
+                return;
+            }
+            Snapshot s = snapshot;
+            if (Arrays.binarySearch(s.keys, key) >= 0) {
+                return;
+            }
+            if (s.keys.length >= maxSize) {
+                s = s.without(s.leastRecentlyRead());
+            }
+            snapshot = s.with(key, value);
+        }
+
+        synchronized void update(int key, UnaryOperator<IntSet> change) {
+            version++;
+            Snapshot s = snapshot;
+            int index = Arrays.binarySearch(s.keys, key);
+            if (index < 0) {
+                return;
+            }
+            snapshot = s.replace(index, change.apply(s.values[index]));
+        }
+
+        synchronized void remove(int key) {
+            version++;
+            int index = Arrays.binarySearch(snapshot.keys, key);
+            if (index >= 0) {
+                snapshot = snapshot.without(index);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        private final int[] keys;
+        private final IntSet[] values;
+        private final long[] lastRead;
+
+        private Snapshot(int[] keys, IntSet[] values, long[] lastRead) {
+            this.keys = keys;
+            this.values = values;
+            this.lastRead = lastRead;
+        }
+
+        private int leastRecentlyRead() {
+            int oldest = 0;
+            for (int i = 1; i < lastRead.length; i++) {
+                if (lastRead[i] < lastRead[oldest]) {
+                    oldest = i;
+                }
+            }
+            return oldest;
+        }
+
+        private Snapshot with(int key, IntSet value) {
+            int insertAt = -Arrays.binarySearch(keys, key) - 1;
+            int n = keys.length;
+            int[] k = new int[n + 1];
+            IntSet[] v = new IntSet[n + 1];
+            long[] r = new long[n + 1];
+            System.arraycopy(keys, 0, k, 0, insertAt);
+            System.arraycopy(values, 0, v, 0, insertAt);
+            System.arraycopy(lastRead, 0, r, 0, insertAt);
+            k[insertAt] = key;
+            v[insertAt] = value;
+            r[insertAt] = System.nanoTime();
+            System.arraycopy(keys, insertAt, k, insertAt + 1, n - insertAt);
+            System.arraycopy(values, insertAt, v, insertAt + 1, n - insertAt);
+            System.arraycopy(lastRead, insertAt, r, insertAt + 1, n - insertAt);
+            return new Snapshot(k, v, r);
+        }
+
+        private Snapshot without(int index) {
+            int n = keys.length;
+            int[] k = new int[n - 1];
+            IntSet[] v = new IntSet[n - 1];
+            long[] r = new long[n - 1];
+            System.arraycopy(keys, 0, k, 0, index);
+            System.arraycopy(values, 0, v, 0, index);
+            System.arraycopy(lastRead, 0, r, 0, index);
+            System.arraycopy(keys, index + 1, k, index, n - index - 1);
+            System.arraycopy(values, index + 1, v, index, n - index - 1);
+            System.arraycopy(lastRead, index + 1, r, index, n - index - 1);
+            return new Snapshot(k, v, r);
+        }
+
+        private Snapshot replace(int index, IntSet value) {
+            IntSet[] v = values.clone();
+            v[index] = value;
+            return new Snapshot(keys, v, lastRead);
+        }
+    }
+}
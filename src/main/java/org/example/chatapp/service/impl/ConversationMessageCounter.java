@@ -0,0 +1,116 @@
+package org.example.chatapp.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bộ đếm tin chưa đọc: unseen = conversations.message_count - conversation_members.read_count.
+ * Tin gửi/thu hồi không UPDATE dòng conversation (dòng nóng) và dòng member của người gửi trong transaction gửi:
+ * delta gom trong RAM như ThreadReplyCounter rồi cộng dồn xuống DB theo batch mỗi flush-interval-ms.
+ * Giá trị đọc ra = giá trị đã lưu + phần chưa flush của instance này (xem unseen).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationMessageCounter {
+
+    private static final String FLUSH_MESSAGES_SQL =
+            "UPDATE conversations SET message_count = message_count + ? WHERE id = ?";
+
+    private static final String FLUSH_READS_SQL =
+            "UPDATE conversation_members SET read_count = read_count + ? WHERE conversation_id = ? AND user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final PendingDeltas<Integer> messages = new PendingDeltas<>();
+    // Khóa (conversationId << 32) | userId; tin tự gửi tính là đã đọc với người gửi
+    private final PendingDeltas<Long> reads = new PendingDeltas<>();
+
+    /**
+     * Tin mới của conversation, đếm theo người gửi. Chỉ tính sau khi transaction hiện tại commit.
+     */
+    public void countSent(Integer conversationId, Map<Integer, Long> countsBySender) {
+        afterCommit(() -> countsBySender.forEach((userId, count) -> {
+            messages.add(conversationId, count);
+            reads.add(key(conversationId, userId), count);
+        }));
+    }
+
+    /**
+     * Tin bị thu hồi: message_count giảm 1. read_count của người đã tính tin đó là đã đọc
+     * do ConversationMemberRepository.revokeReadCount trừ trong transaction thu hồi.
+     */
+    public void countRevoked(Integer conversationId) {
+        afterCommit(() -> messages.add(conversationId, -1));
+    }
+
+    /**
+     * Số tin chưa đọc từ giá trị đã lưu cộng phần chưa flush.
+     */
+    public int unseen(Integer conversationId, Integer userId, int messageCount, int readCount) {
+        long unseen = messageCount + messages.get(conversationId) - readCount - reads.get(key(conversationId, userId));
+        return (int) Math.max(0, unseen);
+    }
+
+    @Scheduled(fixedDelayString = "${app.unread.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<Integer, Long> messageDeltas = messages.drain();
+        Map<Long, Long> readDeltas = reads.drain();
+        if (messageDeltas.isEmpty() && readDeltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> messageBatch = new ArrayList<>(messageDeltas.size());
+        messageDeltas.forEach((conversationId, delta) -> messageBatch.add(new Object[]{delta, conversationId}));
+        List<Object[]> readBatch = new ArrayList<>(readDeltas.size());
+        readDeltas.forEach((key, delta) -> readBatch.add(new Object[]{delta, (int) (key >>> 32), (int) (long) key}));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!messageBatch.isEmpty()) {
+                    jdbcTemplate.batchUpdate(FLUSH_MESSAGES_SQL, messageBatch);
+                }
+                if (!readBatch.isEmpty()) {
+                    jdbcTemplate.batchUpdate(FLUSH_READS_SQL, readBatch);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to flush {} message counters, {} read counters: {}",
+                    messageBatch.size(), readBatch.size(), e.getMessage());
+            messages.restore(messageDeltas);
+            reads.restore(readDeltas);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private static long key(Integer conversationId, Integer userId) {
+        return ((long) conversationId << 32) | (userId & 0xffffffffL);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
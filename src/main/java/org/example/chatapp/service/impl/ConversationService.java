@@ -5,6 +5,7 @@ import org.example.chatapp.dto.request.AddMembersRequest;
 import org.example.chatapp.dto.request.CreateConversationRequest;
 import org.example.chatapp.dto.request.SetRoleConversationMemberRequest;
 import org.example.chatapp.dto.request.UpdateConversationRequest;
+import org.example.chatapp.dto.response.ConversationEventsResponse;
 import org.example.chatapp.dto.response.ConversationResponse;
 import org.example.chatapp.entity.Conversation;
 import org.example.chatapp.entity.ConversationMember;
@@ -19,6 +20,12 @@ import org.example.chatapp.security.model.UserDetailsImpl;
 import org.example.chatapp.service.enums.ConversationEnum;
 import org.example.chatapp.service.enums.ConversationRoleEnum;
 import org.example.chatapp.service.enums.RoleEnum;
+import org.example.chatapp.service.event.MemberChangedEvent;
+import org.example.chatapp.service.event.MembershipChangedEvent;
+import org.example.chatapp.service.event.UserNotificationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,7 +43,11 @@ public class ConversationService {
     private final UserRepository userRepository;
     private final ConversationMemberRepository conversationMemberRepository;
 
-    private final WebSocketService webSocketService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConversationMembershipIndex membershipIndex;
+    private final ReadMarkerBuffer readMarkerBuffer;
+    private final ConversationMessageCounter conversationMessageCounter;
+    private final ConversationEventLog conversationEventLog;
 
     @Transactional
     public void createConversation(CreateConversationRequest request, Integer creatorId){
@@ -101,6 +112,10 @@ public class ConversationService {
             }
         }
 
+        conversationRepository.refreshMemberCount(conversation.getId());
+        eventPublisher.publishEvent(new MembershipChangedEvent(conversation.getId(),
+                allMembers.stream().map(m -> m.getUser().getUserId()).toList(), true));
+
         // Broadcast to all members
         List<ConversationResponse.MemberInfo> memberInfos = allMembers.stream()
                 .map(m -> ConversationResponse.MemberInfo.builder()
@@ -129,7 +144,7 @@ public class ConversationService {
             payload.put("type", "NEW_CONVERSATION");
             payload.put("data", response);
             
-            webSocketService.sendNotification(member.getUser().getUserId(), payload);
+            eventPublisher.publishEvent(new UserNotificationEvent(member.getUser().getUserId(), payload));
         }
     }
 
@@ -207,6 +222,9 @@ public class ConversationService {
 
         if (!membersToSave.isEmpty()) {
             List<ConversationMember> savedMembers = conversationMemberRepository.saveAll(membersToSave);
+            conversationRepository.refreshMemberCount(conversationId);
+            eventPublisher.publishEvent(new MembershipChangedEvent(conversationId,
+                    savedMembers.stream().map(m -> m.getUser().getUserId()).toList(), true));
 
             // Fetch all members to build correct response
             List<ConversationMember> allMembers = conversationMemberRepository.findAllByConversation_IdAndRoleNot(conversationId, ConversationRoleEnum.DELETED);
@@ -233,7 +251,7 @@ public class ConversationService {
                         .role(member.getRole())
                         .build();
                 
-                webSocketService.sendMessageToConversation(conversationId, event);
+                eventPublisher.publishEvent(new MemberChangedEvent(conversationId, event));
 
                 // 2. Notify specific user (NEW_CONVERSATION)
                 ConversationResponse response = ConversationResponse.builder()
@@ -252,17 +270,15 @@ public class ConversationService {
                 userPayload.put("type", "NEW_CONVERSATION");
                 userPayload.put("data", response);
                 
-                webSocketService.sendNotification(member.getUser().getUserId(), userPayload);
+                eventPublisher.publishEvent(new UserNotificationEvent(member.getUser().getUserId(), userPayload));
             }
         }
 
     }
 
+    // Tra trong ConversationMembershipIndex, chỉ tính thành viên chưa bị xóa (role != DELETED)
     public Boolean isMemberInConversation(Integer conversationId, Integer memberId){
-        Conversation conversation = conversationRepository.getConversationById(conversationId).orElseThrow();
-        User usr = userRepository.findById(memberId).orElseThrow();
-        return conversationMemberRepository.existsByConversationAndUser(conversation,usr);
-
+        return membershipIndex.isMember(conversationId, memberId);
     }
 
 
@@ -281,6 +297,10 @@ public class ConversationService {
 
         if (isAuthorized) {
             ConversationMember updatedMember = updateConversationMemberRole(conversationId, request.getConversationMemberId(), request.getConversationRole(), principal.getId());
+            conversationRepository.refreshMemberCount(conversationId);
+            eventPublisher.publishEvent(new MembershipChangedEvent(conversationId,
+                    List.of(updatedMember.getUser().getUserId()),
+                    updatedMember.getRole() != ConversationRoleEnum.DELETED));
 
             // WebSocket Notification
             MemberSocketEvent event = MemberSocketEvent.builder()
@@ -291,7 +311,7 @@ public class ConversationService {
                     .role(updatedMember.getRole())
                     .build();
 
-            webSocketService.sendMessageToConversation(conversationId, event);
+            eventPublisher.publishEvent(new MemberChangedEvent(conversationId, event));
         } else {
             throw new AppException(ErrorCode.FORBIDDEN);
         }
@@ -324,45 +344,41 @@ public class ConversationService {
         List<Conversation> allConversations = conversationRepository
                 .findAllByWorkspaceIdIn(workspaceIds);
 
-        // 3. Lấy tất cả conversation IDs
-        List<Integer> conversationIds = allConversations.stream()
-               .map(Conversation::getId)
-                .collect(Collectors.toList());
+        // 3. Membership của chính user (đã join) kèm read_count
+        Map<Integer, ConversationMember> myMemberships = conversationMemberRepository
+                .findByUser_UserIdAndRoleNot(userId, ConversationRoleEnum.DELETED).stream()
+                .collect(Collectors.toMap(m -> m.getConversation().getId(), m -> m, (a, b) -> a));
 
-        // 4. Lấy tất cả members của các conversations này - 1 query
-        List<ConversationMember> allMembers = conversationMemberRepository
-                .findAllByConversation_IdInAndRoleNot(conversationIds, ConversationRoleEnum.DELETED);
+        // Marker đã đọc còn trong ReadMarkerBuffer (chưa flush) có hiệu lực ngay
+        Map<Integer, Integer> pendingUnseen = readMarkerBuffer.pendingUnseen(userId);
 
-        // 5. Group members by conversation ID
-        Map<Integer, List<ConversationMember>> membersByConversation = allMembers.stream()
-                .collect(Collectors.groupingBy(m -> m.getConversation().getId()));
-
-        // 6. Tìm conversation IDs mà user đã join
-        Set<Integer> joinedConversationIds = allMembers.stream()
-                .filter(m -> m.getUser().getUserId().equals(userId))
-                .map(m -> m.getConversation().getId())
-                .collect(Collectors.toSet());
+        // 4. Người còn lại của các DM user đã join - chỉ load member của DM
+        List<Integer> joinedDmIds = allConversations.stream()
+                .filter(c -> c.getType() == ConversationEnum.DM && myMemberships.containsKey(c.getId()))
+                .map(Conversation::getId)
+                .toList();
+        Map<Integer, List<ConversationMember>> peersByConversation = joinedDmIds.isEmpty()
+                ? Collections.emptyMap()
+                : conversationMemberRepository.findPeersWithUser(joinedDmIds, userId).stream()
+                        .collect(Collectors.groupingBy(m -> m.getConversation().getId()));
 
-        // 7. Build responses
+        // 5. Build responses (totalMembers lấy từ conversations.member_count)
         List<ConversationResponse> responses = new ArrayList<>();
 
         for (Conversation conversation : allConversations) {
-            boolean isJoined = joinedConversationIds.contains(conversation.getId());
+            ConversationMember myMembership = myMemberships.get(conversation.getId());
+            boolean isJoined = myMembership != null;
 
             // Skip private channels that user hasn't joined
             if (!isJoined && conversation.getIsPrivate()) {
                 continue;
             }
 
-            List<ConversationMember> conversationMembers =
-                    membersByConversation.getOrDefault(conversation.getId(), new ArrayList<>());
-
             List<ConversationResponse.MemberInfo> memberInfos = null;
 
             if (conversation.getType() == ConversationEnum.DM && isJoined) {
 
-                memberInfos = conversationMembers.stream()
-                        .filter(m -> !m.getUser().getUserId().equals(userId))
+                memberInfos = peersByConversation.getOrDefault(conversation.getId(), List.of()).stream()
                         .map(m -> ConversationResponse.MemberInfo.builder()
                                 .userId(m.getUser().getUserId())
                                 .conversationMemberId(m.getId())
@@ -372,16 +388,8 @@ public class ConversationService {
                                 .build())
                         .collect(Collectors.toList());
             }
-            Integer unseenCount  = 0;
-            if(isJoined) {
-                ConversationMember member = conversationMemberRepository.findByConversation_IdAndUser_UserId(conversation.getId(),userId).orElseThrow();
-
-                if(member.getLastReadMessage() != null) {
-                    System.out.println(member.getLastReadMessage().getContent());
-                    unseenCount = messageRepository.countUnreadMessages(conversation.getId(),member.getLastReadMessage().getId(),userId);
-
-                }
-            }
+            Integer unseenCount = !isJoined ? 0
+                    : pendingUnseen.getOrDefault(conversation.getId(), unseenCount(conversation, myMembership, userId));
 
             ConversationResponse res = ConversationResponse.builder()
                     .id(conversation.getId())
@@ -390,7 +398,7 @@ public class ConversationService {
                     .unseenCount(unseenCount)
                     .isPrivate(conversation.getIsPrivate())
                     .createdAt(conversation.getCreatedAt())
-                    .totalMembers(conversationMembers.size())
+                    .totalMembers(conversation.getMemberCount())
                     .members(memberInfos)
                     .isJoined(isJoined)
                     .build();
@@ -400,6 +408,15 @@ public class ConversationService {
 
         return responses;
     }
+    // Member chưa từng đánh dấu đã đọc hiển thị 0 như trước khi có bộ đếm
+    private int unseenCount(Conversation conversation, ConversationMember membership, Integer userId) {
+        if (membership.getLastReadMessage() == null) {
+            return 0;
+        }
+        return conversationMessageCounter.unseen(conversation.getId(), userId,
+                conversation.getMessageCount(), membership.getReadCount());
+    }
+
     public ConversationResponse getConversationInfo(Integer conversationId, Integer userId) {
         Conversation conversation = conversationRepository.findById(conversationId)
                 .orElseThrow(() -> new AppException(ErrorCode.CONVERSATION_NOT_FOUND));
@@ -461,14 +478,20 @@ public class ConversationService {
                     .userId(userIdToRemove)
                     .build();
             
-            webSocketService.sendMessageToConversation(conversationId, event);
+            eventPublisher.publishEvent(new MemberChangedEvent(conversationId, event));
         }
+        conversationRepository.refreshMemberCount(conversationId);
+        eventPublisher.publishEvent(new MembershipChangedEvent(conversationId, new ArrayList<>(request.getUserIds()), false));
 
     }
 
-    public List<ConversationResponse> getPublicChannelsToJoin(Integer workspaceId, Integer userId) {
-        // Find public channels that user hasn't joined yet
-        List<Conversation> channels = conversationRepository.findPublicChannelsNotJoined(workspaceId, userId);
+    public List<ConversationResponse> getPublicChannelsToJoin(Integer workspaceId, Integer userId,
+                                                              String namePrefix, int page, int size) {
+        // Find public channels that user hasn't joined yet, sắp theo tên, lọc theo prefix nếu có
+        String prefix = namePrefix == null ? "" : namePrefix.trim();
+        String namePattern = prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        Slice<Conversation> channels = conversationRepository.findPublicChannelsNotJoined(
+                workspaceId, userId, namePattern, PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 200)));
 
         return channels.stream()
                 .map(c -> ConversationResponse.builder()
@@ -477,7 +500,7 @@ public class ConversationService {
                         .type(c.getType())
                         .isPrivate(c.getIsPrivate())
                         .createdAt(c.getCreatedAt())
-                        .totalMembers(conversationMemberRepository.countByConversation_Id(c.getId()))
+                        .totalMembers(c.getMemberCount())
                         .build())
                 .toList();
     }
@@ -509,6 +532,8 @@ public class ConversationService {
                 existing.setRole(ConversationRoleEnum.MEMBER);
                 existing.setJoinedAt(System.currentTimeMillis());
                 conversationMemberRepository.save(existing);
+                conversationRepository.refreshMemberCount(conversationId);
+                eventPublisher.publishEvent(new MembershipChangedEvent(conversationId, List.of(userId), true));
                 return;
             } else {
                 throw new AppException(ErrorCode.USER_EXIST); 
@@ -522,26 +547,23 @@ public class ConversationService {
         cm.setRole(ConversationRoleEnum.MEMBER);
         cm.setJoinedAt(System.currentTimeMillis());
         conversationMemberRepository.save(cm);
+        conversationRepository.refreshMemberCount(conversationId);
+        eventPublisher.publishEvent(new MembershipChangedEvent(conversationId, List.of(userId), true));
     }
 
-    @Transactional
+    // Ghi vào ReadMarkerBuffer, flush xuống DB theo batch (message phải thuộc conversation được kiểm tra lúc flush)
     public void setReadMessage(Integer conversationId, Integer messageId, Integer userId) {
-        // 1. Verify user is member of conversation
-        ConversationMember member = conversationMemberRepository
-                .findByConversation_IdAndUser_UserId(conversationId, userId)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_IN_CONVERSATION));
-
-        // 2. Verify message exists and belongs to conversation
-        org.example.chatapp.entity.Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new AppException(ErrorCode.MESSAGE_NOT_FOUND));
-
-        if (!message.getConversation().getId().equals(conversationId)) {
-            throw new AppException(ErrorCode.MESSAGE_NOT_IN_CONVERSATION);
+        if (!membershipIndex.isMember(conversationId, userId)) {
+            throw new AppException(ErrorCode.USER_NOT_IN_CONVERSATION);
         }
+        readMarkerBuffer.mark(conversationId, userId, messageId);
+    }
 
-        // 3. Update lastReadMessage and lastReadAt
-        member.setLastReadMessage(message);
-        member.setLastReadAt(System.currentTimeMillis());
-        conversationMemberRepository.save(member);
+    // Event bị lỡ sau seq `since` (resume sau reconnect); reset=true thì client tải lại bằng getLatestMessages
+    public ConversationEventsResponse getEventsSince(Integer conversationId, Integer userId, long since) {
+        if (!membershipIndex.isMember(conversationId, userId)) {
+            throw new AppException(ErrorCode.USER_NOT_IN_CONVERSATION);
+        }
+        return conversationEventLog.eventsSince(conversationId, since);
     }
 }
@@ -36,19 +36,19 @@ public class FileService {
 
     @Transactional
     public List<String> uploadFiles(List<MultipartFile> files) throws IOException {
-        return processUpload(files).stream()
+        return processUpload(files, null).stream()
                 .map(Attachment::getFileUrl)
                 .collect(Collectors.toList());
     }
 
     @Transactional
-    public List<Integer> uploadAttachments(List<MultipartFile> files) throws IOException {
-        return processUpload(files).stream()
+    public List<Integer> uploadAttachments(List<MultipartFile> files, Integer userId) throws IOException {
+        return processUpload(files, userId).stream()
                 .map(Attachment::getId)
                 .collect(Collectors.toList());
     }
 
-    private List<Attachment> processUpload(List<MultipartFile> files) throws IOException {
+    private List<Attachment> processUpload(List<MultipartFile> files, Integer uploadedBy) throws IOException {
         List<Attachment> attachments = new ArrayList<>();
 
         for (MultipartFile file : files) {
@@ -69,6 +69,7 @@ public class FileService {
                     .fileType(file.getContentType())
                     .fileSize(file.getSize())
                     .uploadedAt(System.currentTimeMillis())
+                    .uploadedBy(uploadedBy)
                     .build();
 
             attachmentRepository.save(attachment);
@@ -0,0 +1,131 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.repository.HiddenMessageRepository;
+import org.example.chatapp.ultis.IntSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache id các tin nhắn user đã "xóa phía tôi" (IntSet: mảng int đã sort) để lọc trong RAM
+ * thay cho anti-join với hidden_messages. Giới hạn số user và tổng số id giữ trong RAM, evict user theo LRU;
+ * user ẩn quá max-ids-per-user tin thì không cache và caller dùng query anti-join như cũ.
+ */
+@Component
+public class HiddenMessageCache {
+
+    private final HiddenMessageRepository hiddenMessageRepository;
+    private final int maxUsers;
+    private final int maxIdsPerUser;
+    private final long maxTotalIds;
+
+    // access-order = true -> LinkedHashMap hoạt động như LRU; evict trong put()
+    private final LinkedHashMap<Integer, IntSet> sets = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalIds;
+    // Tăng mỗi lần có tin bị ẩn; kết quả load từ DB chỉ được cache nếu không có thay đổi xen giữa
+    private long version;
+
+    public HiddenMessageCache(HiddenMessageRepository hiddenMessageRepository,
+                              @Value("${app.hidden-cache.max-users:50000}") int maxUsers,
+                              @Value("${app.hidden-cache.max-ids-per-user:10000}") int maxIdsPerUser,
+                              @Value("${app.hidden-cache.max-total-ids:2000000}") long maxTotalIds) {
+        this.hiddenMessageRepository = hiddenMessageRepository;
+        this.maxUsers = maxUsers;
+        this.maxIdsPerUser = maxIdsPerUser;
+        this.maxTotalIds = maxTotalIds;
+    }
+
+    /**
+     * Tập id tin nhắn user đã ẩn, hoặc null nếu quá lớn để cache (caller phải lọc bằng DB).
+     */
+    public IntSet get(Integer userId) {
+        long loadVersion;
+        synchronized (sets) {
+            IntSet cached = sets.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            loadVersion = version;
+        }
+
+        // Đếm trước (index-only) để không kéo cả danh sách id của user ẩn quá nhiều tin
+        if (hiddenMessageRepository.countByUser_UserId(userId) > maxIdsPerUser) {
+            return null;
+        }
+        IntSet loaded = IntSet.of(hiddenMessageRepository.findHiddenMessageIdsByUserId(userId));
+        synchronized (sets) {
+            if (version == loadVersion && !sets.containsKey(userId)) {
+                put(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Bỏ tập của user sau khi transaction commit (load lại lần đọc sau).
+     */
+    public void evict(Integer userId) {
+        afterCommit(() -> {
+            synchronized (sets) {
+                version++;
+                IntSet current = sets.remove(userId);
+                if (current != null) {
+                    totalIds -= current.size();
+                }
+            }
+        });
+    }
+
+    /**
+     * Ghi nhận tin vừa bị ẩn sau khi transaction commit.
+     */
+    public void add(Integer userId, Integer messageId) {
+        afterCommit(() -> {
+            synchronized (sets) {
+                version++;
+                IntSet current = sets.remove(userId);
+                if (current == null) {
+                    return;
+                }
+                totalIds -= current.size();
+                IntSet next = current.with(messageId);
+                if (next.size() <= maxIdsPerUser) {
+                    put(userId, next);
+                }
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Gọi khi đang giữ lock
+    private void put(Integer userId, IntSet set) {
+        sets.put(userId, set);
+        totalIds += set.size();
+        Iterator<Map.Entry<Integer, IntSet>> eldest = sets.entrySet().iterator();
+        while ((totalIds > maxTotalIds || sets.size() > maxUsers) && eldest.hasNext()) {
+            Map.Entry<Integer, IntSet> entry = eldest.next();
+            if (entry.getKey().equals(userId)) {
+                continue;
+            }
+            totalIds -= entry.getValue().size();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.chatapp.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.chatapp.dto.response.MessageResponse;
+import org.example.chatapp.entity.*;
+import org.example.chatapp.repository.*;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Build MessageResponse cho cả một trang tin nhắn với số query cố định
+ * (sender, parent, reactions, mentions, attachments, pinned), không phụ thuộc số tin nhắn.
+ */
+@Service
+@RequiredArgsConstructor
+public class MessageHydrationService {
+
+    private final MessageRepository messageRepository;
+    private final UserRepository userRepository;
+    private final MessageReactionRepository messageReactionRepository;
+    private final MessageMentionRepository messageMentionRepository;
+    private final AttachmentRepository attachmentRepository;
+    private final PinnedMessageRepository pinnedMessageRepository;
+    private final FileService fileService;
+    private final ThreadReplyCounter threadReplyCounter;
+
+    @Transactional(readOnly = true)
+    public List<MessageResponse> hydrate(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> messageIds = messages.stream().map(Message::getId).toList();
+
+        // Lấy id qua proxy không trigger lazy load
+        Set<Integer> senderIds = messages.stream()
+                .map(m -> m.getSender().getUserId())
+                .collect(Collectors.toSet());
+        Set<Integer> parentIds = messages.stream()
+                .filter(m -> m.getParentMessage() != null)
+                .map(m -> m.getParentMessage().getId())
+                .collect(Collectors.toSet());
+
+        Map<Integer, User> senders = userRepository.findAllById(senderIds).stream()
+                .collect(Collectors.toMap(User::getUserId, Function.identity()));
+
+        Map<Integer, Message> parents = parentIds.isEmpty()
+                ? Collections.emptyMap()
+                : messageRepository.findAllById(parentIds).stream()
+                        .collect(Collectors.toMap(Message::getId, Function.identity()));
+
+        Map<Integer, List<MessageReaction>> reactions = messageReactionRepository
+                .findAllWithUserByMessageIdIn(messageIds).stream()
+                .collect(Collectors.groupingBy(r -> r.getMessage().getId()));
+
+        Map<Integer, List<MessageMention>> mentions = messageMentionRepository
+                .findAllWithUserByMessageIdIn(messageIds).stream()
+                .collect(Collectors.groupingBy(mm -> mm.getMessage().getId()));
+
+        Map<Integer, List<Attachment>> attachments = attachmentRepository
+                .findAllByMessage_IdIn(messageIds).stream()
+                .collect(Collectors.groupingBy(a -> a.getMessage().getId()));
+
+        Set<Integer> pinnedIds = new HashSet<>(pinnedMessageRepository.findPinnedMessageIdsIn(messageIds));
+
+        return messages.stream()
+                .map(m -> {
+                    User sender = senders.getOrDefault(m.getSender().getUserId(), m.getSender());
+                    return toResponse(
+                        m,
+                        sender.getUserId(), sender.getFullName(), sender.getAvatar(),
+                        m.getParentMessage() != null ? parents.get(m.getParentMessage().getId()) : null,
+                        reactions.getOrDefault(m.getId(), Collections.emptyList()),
+                        mentions.getOrDefault(m.getId(), Collections.emptyList()),
+                        attachments.getOrDefault(m.getId(), Collections.emptyList()),
+                        pinnedIds.contains(m.getId()));
+                })
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public MessageResponse hydrate(Message message) {
+        return hydrate(List.of(message)).get(0);
+    }
+
+    /**
+     * Tin nhắn vừa tạo chưa có reaction/pin, sender đã có trong SenderContext và attachments đã được
+     * MessageService load sẵn, nên build thẳng không cần query; có reply/mention thì hydrate đầy đủ.
+     */
+    public MessageResponse hydrateCreated(Message message, SenderContext sender) {
+        if (message.getParentMessage() != null
+                || (message.getMentions() != null && !message.getMentions().isEmpty())) {
+            return hydrate(message);
+        }
+        List<Attachment> attachments = message.getAttachments() != null
+                ? message.getAttachments() : Collections.emptyList();
+        return toResponse(message, sender.getUserId(), sender.getFullName(), sender.getAvatar(),
+                null, Collections.emptyList(), Collections.emptyList(), attachments, false);
+    }
+
+    // Giá trị đã lưu cộng phần ThreadReplyCounter chưa flush
+    private int threadReplyCount(Message message) {
+        int persisted = message.getThreadReplyCount() != null ? message.getThreadReplyCount() : 0;
+        return persisted + threadReplyCounter.pending(message.getId());
+    }
+
+    private MessageResponse toResponse(Message message,
+                                       Integer senderId,
+                                       String senderName,
+                                       String senderAvatar,
+                                       Message parent,
+                                       List<MessageReaction> reactions,
+                                       List<MessageMention> mentions,
+                                       List<Attachment> attachments,
+                                       boolean isPinned) {
+        MessageResponse response = MessageResponse.builder()
+                .id(message.getId())
+                .content(message.getContent())
+                .status(message.getStatus())
+                .createdAt(message.getCreatedAt())
+                .updatedAt(message.getUpdatedAt())
+                .conversationId(message.getConversation().getId())
+                .senderId(senderId)
+                .senderName(senderName)
+                .senderAvatar(senderAvatar)
+                .isPinned(isPinned)
+                .threadReplyCount(threadReplyCount(message))
+                .build();
+
+        // Parent message (reply)
+        if (parent != null) {
+            response.setParentMessageId(parent.getId());
+            response.setParentContent(parent.getContent());
+        }
+
+        // Map reactions - build full URL from filename stored in DB
+        if (!reactions.isEmpty()) {
+            response.setReactions(reactions.stream()
+                    .map(r -> MessageResponse.ReactionInfo.builder()
+                            .userId(r.getConversationMember().getUser().getUserId())
+                            .userName(r.getConversationMember().getUser().getFullName())
+                            .emoji(fileService.buildEmojiUrl(r.getEmoji()))
+                            .reactedAt(r.getReactedAt())
+                            .build())
+                    .toList());
+        }
+
+        if (!mentions.isEmpty()) {
+            response.setMentions(mentions.stream()
+                    .map(mm -> MessageResponse.MentionInfo.builder()
+                            .memberId(mm.getConversationMember().getId())
+                            .userId(mm.getConversationMember().getUser().getUserId())
+                            .userName(mm.getConversationMember().getUser().getFullName())
+                            .build())
+                    .toList());
+        }
+
+        if (!attachments.isEmpty()) {
+            response.setAttachments(attachments.stream()
+                    .map(a -> MessageResponse.AttachmentInfo.builder()
+                            .id(a.getId())
+                            .fileUrl(a.getFileUrl())
+                            .fileType(a.getFileType())
+                            .fileSize(a.getFileSize())
+                            .build())
+                    .toList());
+        }
+
+        if (message.getThread() != null) {
+            response.setThreadId(message.getThread().getId());
+        }
+        return response;
+    }
+}
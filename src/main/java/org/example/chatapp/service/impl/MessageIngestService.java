@@ -0,0 +1,242 @@
+package org.example.chatapp.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.chatapp.dto.request.CreateMessageRequest;
+import org.example.chatapp.dto.response.MessageResponse;
+import org.example.chatapp.exception.AppException;
+import org.example.chatapp.exception.ErrorCode;
+import org.example.chatapp.service.enums.ConversationRoleEnum;
+import org.springframework.beans.factory.annotation.Value;
+import org.example.chatapp.service.event.MessageChangedEvent;
+import org.example.chatapp.service.event.UserNotificationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nhận tin nhắn gửi qua STOMP.
+ * - sync: gọi thẳng MessageService.createMessage như trước.
+ * - batched: đưa vào queue có giới hạn, một writer thread gom tối đa maxBatch tin (hoặc chờ maxWaitMs)
+ *   rồi ghi trong một transaction, commit xong mới broadcast. id tin nhắn cấp theo block nên INSERT của
+ *   tin text thường được gộp thành một lệnh batch; tin có reply/thread/attachment/mention vẫn cần thêm query riêng.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageIngestService {
+
+    private final MessageService messageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.message.ingest.mode:sync}")
+    private String mode;
+
+    @Value("${app.message.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.message.ingest.max-batch:256}")
+    private int maxBatch;
+
+    @Value("${app.message.ingest.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    // reject: queue đầy thì từ chối ngay; block: chờ tối đa offer-timeout-ms rồi mới từ chối
+    @Value("${app.message.ingest.overflow:reject}")
+    private String overflow;
+
+    @Value("${app.message.ingest.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Timer commitTimer;
+    private Timer queueWaitTimer;
+    private DistributionSummary batchSize;
+    private Counter rejected;
+    private Counter fallbacks;
+
+    @PostConstruct
+    void start() {
+        if (!isBatched()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("chat.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Số tin nhắn đang chờ ghi")
+                .register(meterRegistry);
+        commitTimer = Timer.builder("chat.ingest.commit.latency")
+                .description("Thời gian ghi + commit một batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("chat.ingest.queue.wait")
+                .description("Thời gian từ lúc nhận đến lúc bắt đầu ghi")
+                .register(meterRegistry);
+        batchSize = DistributionSummary.builder("chat.ingest.batch.size").register(meterRegistry);
+        rejected = Counter.builder("chat.ingest.rejected").register(meterRegistry);
+        fallbacks = Counter.builder("chat.ingest.batch.fallback").register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::runWriter, "message-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+
+        // Ghi nốt phần còn lại trong queue trước khi tắt
+        List<PendingMessage> rest = new ArrayList<>();
+        while (queue.drainTo(rest, maxBatch) > 0) {
+            writeBatch(rest);
+            rest.clear();
+        }
+    }
+
+    public void submit(CreateMessageRequest request, SenderContext sender) {
+        if (!isBatched()) {
+            messageService.createMessage(request, sender);
+            return;
+        }
+
+        PendingMessage pending = new PendingMessage(request, sender, System.nanoTime());
+        // Lỗi biết trước thì từ chối ngay, không để một tin làm rollback cả batch
+        if (sender.getRole() == ConversationRoleEnum.DELETED) {
+            notifyRejected(pending, ErrorCode.FORBIDDEN);
+            return;
+        }
+        boolean accepted;
+        try {
+            accepted = "block".equalsIgnoreCase(overflow)
+                    ? queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)
+                    : queue.offer(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+
+        // Frame STOMP không có response, báo lỗi qua queue notification riêng của user
+        if (!accepted) {
+            rejected.increment();
+            notifyRejected(pending, ErrorCode.MESSAGE_QUEUE_FULL);
+        }
+    }
+
+    private boolean isBatched() {
+        return "batched".equalsIgnoreCase(mode);
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                log.error("Message ingest writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingMessage> batch) {
+        long now = System.nanoTime();
+        batch.forEach(p -> queueWaitTimer.record(now - p.getEnqueuedAt(), TimeUnit.NANOSECONDS));
+        batchSize.record(batch.size());
+
+        List<MessageResponse> responses = commitTimer.record(() -> persist(batch));
+        for (MessageResponse response : responses) {
+            eventPublisher.publishEvent(new MessageChangedEvent(response.getConversationId(), response));
+        }
+    }
+
+    /**
+     * Ghi batch trong một transaction. Một tin lỗi làm rollback cả batch -> chia đôi và ghi lại từng nửa,
+     * nên k tin lỗi chỉ tốn khoảng k * log2(n) transaction thay vì ghi lại cả n tin một.
+     * Trả về các tin đã commit theo thứ tự nhận; tin lỗi được báo cho người gửi.
+     */
+    private List<MessageResponse> persist(List<PendingMessage> batch) {
+        try {
+            return transactionTemplate.execute(status -> messageService.createMessages(batch));
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                rejectFailed(batch.get(0), e);
+                return List.of();
+            }
+            log.warn("Batch of {} messages failed, retrying in halves: {}", batch.size(), e.getMessage());
+            fallbacks.increment();
+            int half = batch.size() / 2;
+            List<MessageResponse> responses = new ArrayList<>(persist(batch.subList(0, half)));
+            responses.addAll(persist(batch.subList(half, batch.size())));
+            return responses;
+        }
+    }
+
+    private void rejectFailed(PendingMessage pending, Exception e) {
+        if (e instanceof AppException appException) {
+            notifyRejected(pending, appException.getErrorCode());
+        } else {
+            log.error("Failed to persist message for conversation {}", pending.getConversationId(), e);
+            notifyRejected(pending, ErrorCode.UNCATEGORIZED);
+        }
+    }
+
+    private void notifyRejected(PendingMessage pending, ErrorCode errorCode) {
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("type", "MESSAGE_REJECTED");
+        notification.put("conversationId", pending.getConversationId());
+        notification.put("content", pending.getRequest().getContent());
+        notification.put("code", errorCode.getCode());
+        notification.put("message", errorCode.getMessage());
+        eventPublisher.publishEvent(new UserNotificationEvent(pending.getUserId(), notification));
+    }
+}
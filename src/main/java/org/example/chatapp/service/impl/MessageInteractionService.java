@@ -10,7 +10,9 @@ import org.example.chatapp.exception.AppException;
 import org.example.chatapp.exception.ErrorCode;
 import org.example.chatapp.mapper.MessageMapper;
 import org.example.chatapp.repository.*;
-import org.springframework.scheduling.annotation.Async;
+import org.example.chatapp.service.event.MessageChangedEvent;
+import org.example.chatapp.service.event.ReactionChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,35 +32,9 @@ public class MessageInteractionService {
     private final AttachmentRepository attachmentRepository;
     private final UserRepository userRepository;
     private final FileService fileService;
-    private final WebSocketService webSocketService;
+    private final ApplicationEventPublisher eventPublisher;
     private final MessageMapper messageMapper;
-
-    @Async
-    public void sendTypingStatus(Integer conversationId, boolean isTyping, Integer userId) {
-        try {
-            // Dùng JOIN FETCH để eager load User trong 1 query
-            ConversationMember member = memberRepository
-                    .findByConversationIdAndUserIdWithUser(conversationId, userId)
-                    .orElse(null);
-            
-            if (member == null) {
-                return;
-            }
-
-            var typingNotification = new java.util.HashMap<String, Object>();
-            typingNotification.put("type", "TYPING");
-            typingNotification.put("conversationId", conversationId);
-            typingNotification.put("userId", userId);
-            typingNotification.put("userName", member.getUser().getFullName());
-            typingNotification.put("avatar", member.getUser().getAvatar());
-            typingNotification.put("isTyping", isTyping);
-
-            webSocketService.sendMessageToConversation(conversationId, typingNotification);
-        } catch (Exception e) {
-            // Silent fail - typing is not critical
-        }
-    }
-
+    private final RecentMessageCache recentMessageCache;
 
     @Transactional
     public MessageInteractionResponse addReaction(ReactMessageRequest request, Integer messageId, Integer userId) {
@@ -84,7 +60,7 @@ public class MessageInteractionService {
                 messageReactionRepository.delete(existing);
                 
                 reactionNotification.put("type", "REACTION_REMOVED");
-                webSocketService.sendMessageToConversation(message.getConversation().getId(), reactionNotification);
+                eventPublisher.publishEvent(new ReactionChangedEvent(message.getConversation().getId(), reactionNotification));
             } else {
 
                 existing.setEmoji(request.getEmoji());
@@ -94,7 +70,7 @@ public class MessageInteractionService {
                 reactionNotification.put("type", "REACTION_UPDATED");
                 reactionNotification.put("emoji", fileService.buildEmojiUrl(existing.getEmoji())); // Build full URL
                 reactionNotification.put("reactedAt", existing.getReactedAt());
-                webSocketService.sendMessageToConversation(message.getConversation().getId(), reactionNotification);
+                eventPublisher.publishEvent(new ReactionChangedEvent(message.getConversation().getId(), reactionNotification));
             }
         } else {
             MessageReaction reaction = MessageReaction.builder()
@@ -108,8 +84,9 @@ public class MessageInteractionService {
             reactionNotification.put("type", "REACTION_ADDED");
             reactionNotification.put("emoji", fileService.buildEmojiUrl(reaction.getEmoji())); // Build full URL
             reactionNotification.put("reactedAt", reaction.getReactedAt());
-            webSocketService.sendMessageToConversation(message.getConversation().getId(), reactionNotification);
+            eventPublisher.publishEvent(new ReactionChangedEvent(message.getConversation().getId(), reactionNotification));
         }
+        recentMessageCache.refresh(message);
         
         return buildMessageInteractionResponse(message);
     }
@@ -130,13 +107,14 @@ public class MessageInteractionService {
         }
         
         messageReactionRepository.deleteByMessage_IdAndConversationMember_Id(messageId, member.getId());
+        recentMessageCache.refresh(message);
         
         // Send WebSocket notification for reaction removal
         var reactionNotification = new java.util.HashMap<String, Object>();
         reactionNotification.put("type", "REACTION_REMOVED");
         reactionNotification.put("messageId", messageId);
         reactionNotification.put("userId", member.getUser().getUserId());
-        webSocketService.sendMessageToConversation(message.getConversation().getId(), reactionNotification);
+        eventPublisher.publishEvent(new ReactionChangedEvent(message.getConversation().getId(), reactionNotification));
     }
 
 
@@ -161,6 +139,7 @@ public class MessageInteractionService {
                 .build();
 
         pinnedMessageRepository.save(pinnedMessage);
+        recentMessageCache.refresh(message);
         Integer convId = message.getConversation().getId();
         MessageResponse res = MessageResponse.builder()
                 .id(message.getId())
@@ -174,7 +153,7 @@ public class MessageInteractionService {
                 .senderAvatar(message.getSender().getAvatar())
                 .isPinned(true)
                 .build();
-        webSocketService.sendMessageToConversation(convId, res);
+        eventPublisher.publishEvent(new MessageChangedEvent(convId, res));
         return buildMessageInteractionResponse(message);
     }
 
@@ -189,6 +168,7 @@ public class MessageInteractionService {
                 .orElseThrow(() -> new AppException(ErrorCode.MESSAGE_NOT_FOUND));
 
         pinnedMessageRepository.deleteByMessage_Id(messageId);
+        recentMessageCache.refresh(message);
 
         MessageResponse response = MessageResponse.builder()
                 .id(message.getId())
@@ -202,7 +182,7 @@ public class MessageInteractionService {
                 .senderAvatar(message.getSender().getAvatar())
                 .isPinned(false)
                 .build();
-        webSocketService.sendMessageToConversation(message.getConversation().getId(), response);
+        eventPublisher.publishEvent(new MessageChangedEvent(message.getConversation().getId(), response));
     }
 
     public Boolean checkPinLimit(Integer conversationId) {
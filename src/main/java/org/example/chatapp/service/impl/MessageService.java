@@ -5,6 +5,7 @@ import org.example.chatapp.dto.request.CreateMessageRequest;
 import org.example.chatapp.dto.request.MessageUpdateRequest;
 import org.example.chatapp.dto.response.MessageResponse;
 import org.example.chatapp.dto.response.MessageSearchResponse;
+import org.example.chatapp.dto.response.MessageWindowResponse;
 import org.example.chatapp.entity.*;
 import org.example.chatapp.exception.AppException;
 import org.example.chatapp.exception.ErrorCode;
@@ -12,47 +13,96 @@ import org.example.chatapp.mapper.MessageMapper;
 import org.example.chatapp.repository.*;
 import org.example.chatapp.service.enums.ConversationRoleEnum;
 import org.example.chatapp.service.enums.MessageStatus;
+import org.example.chatapp.ultis.IntSet;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.example.chatapp.service.event.MessageChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class MessageService {
 
+    private static final int MAX_WINDOW_SIZE = 100;
+
     private final MessageRepository messageRepository;
     private final ConversationRepository conversationRepository;
     private final ConversationMemberRepository conversationMemberRepository;
     private final MessageMapper messageMapper;
     private final AttachmentRepository attachmentRepository;
     private final MessageMentionRepository messageMentionRepository;
-    private final WebSocketService webSocketService;
-    private final FileService fileService;
-    private final PinnedMessageRepository pinnedMessageRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MessageHydrationService messageHydrationService;
+    private final RecentMessageCache recentMessageCache;
     private final HiddenMessageRepository hiddenMessageRepository;
     private final UserRepository userRepository;
+    private final ThreadReplyCounter threadReplyCounter;
+    private final HiddenMessageCache hiddenMessageCache;
+    private final SenderContextCache senderContextCache;
+    private final ConversationMessageCounter conversationMessageCounter;
 
     @Transactional
-    public void createMessage(CreateMessageRequest request,Integer memberId, Integer conversationId,Integer parentMessageId) {
-        Conversation conversation = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new AppException(ErrorCode.CONVERSATION_NOT_FOUND));
+    public void createMessage(CreateMessageRequest request, SenderContext sender) {
+        Message message = persistMessage(request, sender);
+        Integer conversationId = sender.getConversationId();
+
+        MessageResponse response = messageHydrationService.hydrateCreated(message, sender);
+        cacheCreated(response);
+        // Không UPDATE dòng conversation trong transaction gửi, ConversationMessageCounter ghi theo batch
+        conversationMessageCounter.countSent(conversationId, Map.of(sender.getUserId(), 1L));
+        eventPublisher.publishEvent(new MessageChangedEvent(conversationId, response));
+    }
 
-        if(!conversationMemberRepository.existsByIdAndConversation_Id(memberId, conversationId))
-            throw new AppException(ErrorCode.MEMBER_NOT_FOUND);
+    /**
+     * Ghi cả một batch tin nhắn trong transaction hiện tại (MessageIngestService mở transaction).
+     * Hydrate chung một lần cho cả batch; broadcast do caller làm sau khi commit.
+     */
+    public List<MessageResponse> createMessages(List<PendingMessage> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(persistMessage(pending.getRequest(), pending.getSender()));
+        }
+
+        List<MessageResponse> responses = messageHydrationService.hydrate(messages);
+        responses.forEach(this::cacheCreated);
+
+        Map<Integer, Map<Integer, Long>> countsBySender = messages.stream()
+                .collect(Collectors.groupingBy(m -> m.getConversation().getId(),
+                        Collectors.groupingBy(m -> m.getSender().getUserId(), Collectors.counting())));
+        countsBySender.forEach(conversationMessageCounter::countSent);
+        return responses;
+    }
 
-        ConversationMember sender = conversationMemberRepository.getConversationMembersById(memberId);
+    /**
+     * Membership và thông tin người gửi lấy từ SenderContext (đã cache), conversation/user chỉ là reference
+     * nên tin nhắn text thường chỉ tốn một INSERT.
+     */
+    private Message persistMessage(CreateMessageRequest request, SenderContext sender) {
         if(sender.getRole() == ConversationRoleEnum.DELETED)
             throw new AppException(ErrorCode.FORBIDDEN);
+        Integer conversationId = sender.getConversationId();
+        Integer parentMessageId = request.getParentMessageId();
+
         Message message = messageMapper.convertToMessage(request);
         message.setCreatedAt(System.currentTimeMillis());
-        message.setConversation(conversation);
-        message.setSender(sender.getUser());
+        message.setConversation(conversationRepository.getReferenceById(conversationId));
+        message.setSender(userRepository.getReferenceById(sender.getUserId()));
         message.setStatus(MessageStatus.SENT);
 
         if(parentMessageId != null){
@@ -75,18 +125,17 @@ public class MessageService {
         messageRepository.save(message);
         
         if (request.getThreadId() != null) {
-            messageRepository.incrementThreadReplyCount(request.getThreadId());
+            // Không UPDATE tin gốc ở đây (row lock tới hết transaction), ThreadReplyCounter ghi theo batch
+            threadReplyCounter.add(request.getThreadId(), 1);
         }
         
-        List<Attachment> attachments = new ArrayList<>();
         if (request.getUrls() != null && !request.getUrls().isEmpty()) {
-            for (Integer attachmentId : request.getUrls()) {
-                Attachment attachment = attachmentRepository.findById(attachmentId).orElseThrow();
-                attachment.setMessage(message);
-                attachments.add(attachment);
-            }
-            attachmentRepository.saveAll(attachments);
-            message.setAttachments(attachments);
+            // Một UPDATE cho cả danh sách; số dòng khác số id => có attachment không tồn tại, đã dùng hoặc của người khác
+            Set<Integer> attachmentIds = new HashSet<>(request.getUrls());
+            int claimed = attachmentRepository.claimForMessage(message, attachmentIds, sender.getUserId());
+            if (claimed != attachmentIds.size())
+                throw new AppException(ErrorCode.ATTACHMENT_NOT_AVAILABLE);
+            message.setAttachments(attachmentRepository.findAllByMessage_IdIn(List.of(message.getId())));
         }
         
         List<MessageMention> messageMentions = new ArrayList<>();
@@ -103,21 +152,104 @@ public class MessageService {
             messageMentionRepository.saveAll(messageMentions);
             message.setMentions(messageMentions);
         }
-        
+        return message;
+    }
 
-        MessageResponse response = toMessageResponseWithInteractions(message);
-        webSocketService.sendMessageToConversation(conversation.getId(), response);
+    private void cacheCreated(MessageResponse response) {
+        recentMessageCache.append(response);
+        if (response.getThreadId() != null) {
+            recentMessageCache.adjustThreadReplyCount(response.getConversationId(), response.getThreadId(), 1);
+        }
     }
 
     public Page<MessageResponse> getLatestMessages(Integer conversationId, Integer userId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
 
+        // Page đầu lấy từ RecentMessageCache, chỉ còn query đếm tổng khi page đầy
+        if (page == 0) {
+            List<MessageResponse> cached = recentMessageCache.getLatest(conversationId, userId,
+                    senderContextCache.get(userId, conversationId).visibleFromId(), size);
+            if (cached != null) {
+                return PageableExecutionUtils.getPage(cached, pageable,
+                        () -> messageRepository.countVisibleChannelMessages(conversationId, userId));
+            }
+        }
+
         Page<Message> messagePage =
                 messageRepository.findVisibleChannelMessages(conversationId, userId, pageable);
 
-        return messagePage.map(this::toMessageResponseWithInteractions);
+        return hydratePage(messagePage);
+    }
+
+
+    /**
+     * Lịch sử tin nhắn theo cursor (keyset trên message id), không chạy COUNT.
+     * before/after là id tin nhắn làm mốc; không truyền cả hai thì lấy các tin mới nhất.
+     */
+    public MessageWindowResponse getMessageHistory(Integer conversationId, Integer userId,
+                                                   Integer before, Integer after, int size) {
+        int limit = clampWindowSize(size);
+        if (after != null) {
+            Slice<Message> slice = channelAfter(conversationId, userId, after,
+                    PageRequest.of(0, limit, Sort.by("id").ascending()));
+            return buildWindow(newestFirst(slice.getContent()), true, slice.hasNext());
+        }
+
+        if (before == null) {
+            // Lấy dư 1 tin để biết còn tin cũ hơn hay không
+            List<MessageResponse> cached = recentMessageCache.getLatest(conversationId, userId,
+                    senderContextCache.get(userId, conversationId).visibleFromId(), limit + 1);
+            if (cached != null) {
+                boolean hasMoreBefore = cached.size() > limit;
+                return toWindow(hasMoreBefore ? cached.subList(0, limit) : cached, hasMoreBefore, false);
+            }
+        }
+
+        Slice<Message> slice = channelBefore(conversationId, userId, before != null ? before : Integer.MAX_VALUE,
+                PageRequest.of(0, limit, Sort.by("id").descending()));
+        return buildWindow(slice.getContent(), slice.hasNext(), before != null);
     }
 
+    /**
+     * Lấy N tin trước và N tin sau tin nhắn mốc bằng hai range query trên index,
+     * thay cho việc đếm toàn bộ tin mới hơn rồi tính page như getMessageContext.
+     */
+    public MessageWindowResponse getMessageWindow(Integer messageId, Integer userId, int size) {
+        Message target = messageRepository.findById(messageId)
+                .orElseThrow(() -> new AppException(ErrorCode.MESSAGE_NOT_FOUND));
+
+        Integer conversationId = target.getConversation().getId();
+        ConversationMember member = conversationMemberRepository
+                .findByConversation_IdAndUser_UserId(conversationId, userId)
+                .orElseThrow(() -> new AppException(ErrorCode.ACCESS_DENIED));
+        if (member.getRole() == ConversationRoleEnum.DELETED)
+            throw new AppException(ErrorCode.ACCESS_DENIED);
+        if (member.getHiddenBeforeMessageId() != null && messageId < member.getHiddenBeforeMessageId())
+            throw new AppException(ErrorCode.MESSAGE_NOT_FOUND);
+
+        int limit = clampWindowSize(size);
+        // Phía trước lấy thêm 1 để bao gồm chính tin nhắn mốc (nếu user chưa ẩn nó)
+        Pageable olderPage = PageRequest.of(0, limit + 1, Sort.by("id").descending());
+        Pageable newerPage = PageRequest.of(0, limit, Sort.by("id").ascending());
+
+        Slice<Message> older;
+        Slice<Message> newer;
+        if (target.getThread() != null) {
+            Integer threadId = target.getThread().getId();
+            older = threadBefore(threadId, userId, messageId + 1, olderPage);
+            newer = threadAfter(threadId, userId, messageId, newerPage);
+        } else {
+            older = channelBefore(conversationId, userId, messageId + 1, olderPage);
+            newer = channelAfter(conversationId, userId, messageId, newerPage);
+        }
+
+        List<Message> window = newestFirst(newer.getContent());
+        window.addAll(older.getContent());
+
+        MessageWindowResponse response = buildWindow(window, older.hasNext(), newer.hasNext());
+        response.setAnchorId(messageId);
+        return response;
+    }
 
     public Page<MessageResponse> getMessageContext(Integer messageId, Integer userId, int size) {
         Message targetMessage = messageRepository.findById(messageId)
@@ -136,77 +268,6 @@ public class MessageService {
         return getLatestMessages(conversationId, userId, page, size);
     }
 
-    private MessageResponse toMessageResponseWithInteractions(Message message) {
-        // Map basic message info
-        MessageResponse response = MessageResponse.builder()
-                .id(message.getId())
-                .content(message.getContent())
-                .status(message.getStatus())
-                .createdAt(message.getCreatedAt())
-                .updatedAt(message.getUpdatedAt())
-                .conversationId(message.getConversation().getId())
-                .senderId(message.getSender().getUserId())
-                .senderName(message.getSender().getFullName())
-                .senderAvatar(message.getSender().getAvatar())
-                .build();
-
-        // Parent message (reply)
-        if (message.getParentMessage() != null) {
-            response.setParentMessageId(message.getParentMessage().getId());
-            response.setParentContent(message.getParentMessage().getContent());
-        }
-
-        // Map reactions - build full URL from filename stored in DB
-        if (message.getReactions() != null && !message.getReactions().isEmpty()) {
-            List<MessageResponse.ReactionInfo> reactions = message.getReactions().stream()
-                    .map(r -> MessageResponse.ReactionInfo.builder()
-                            .userId(r.getConversationMember().getUser().getUserId())
-                            .userName(r.getConversationMember().getUser().getFullName())
-                            .emoji(fileService.buildEmojiUrl(r.getEmoji())) // Build full URL
-                            .reactedAt(r.getReactedAt())
-                            .build())
-                    .toList();
-            response.setReactions(reactions);
-        }
-
-        // Map mentions
-        if (message.getMentions() != null && !message.getMentions().isEmpty()) {
-            List<MessageResponse.MentionInfo> mentions = message.getMentions().stream()
-                    .map(m -> MessageResponse.MentionInfo.builder()
-                            .memberId(m.getConversationMember().getId())
-                            .userId(m.getConversationMember().getUser().getUserId())
-                            .userName(m.getConversationMember().getUser().getFullName())
-                            .build())
-                    .toList();
-            response.setMentions(mentions);
-        }
-
-        // Map attachments
-        if (message.getAttachments() != null && !message.getAttachments().isEmpty()) {
-            List<MessageResponse.AttachmentInfo> attachments = message.getAttachments().stream()
-                    .map(a -> MessageResponse.AttachmentInfo.builder()
-                            .id(a.getId())
-                            .fileUrl(a.getFileUrl())
-                            .fileType(a.getFileType())
-                            .fileSize(a.getFileSize())
-                            .build())
-                    .toList();
-            response.setAttachments(attachments);
-        }
-
-        // Check if pinned
-        Boolean isPinned = pinnedMessageRepository.existsByMessage_Id(message.getId());
-        response.setIsPinned(isPinned);
-        
-        response.setThreadReplyCount(message.getThreadReplyCount());
-        if(message.getThread() != null) {
-
-            response.setThreadId(message.getThread().getId());
-        }
-        return response;
-    }
-
-
     public void updateMessage(Integer messageId, Integer userId, MessageUpdateRequest  request) {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new AppException(ErrorCode.MESSAGE_NOT_FOUND));
@@ -219,8 +280,9 @@ public class MessageService {
         messageRepository.save(message);
 
         // Send WebSocket notification with updated message
-        MessageResponse response = toMessageResponseWithInteractions(message);
-        webSocketService.sendMessageToConversation(message.getConversation().getId(), response);
+        MessageResponse response = messageHydrationService.hydrate(message);
+        recentMessageCache.refresh(message);
+        eventPublisher.publishEvent(new MessageChangedEvent(message.getConversation().getId(), response));
     }
     @Transactional
     public void revokeMessage(Integer messageId, Integer userId){
@@ -231,9 +293,15 @@ public class MessageService {
             throw new AppException(ErrorCode.ACCESS_DENIED);
         }
         
+        boolean wasRevoked = message.getStatus() == MessageStatus.REVOKED;
         message.setStatus(MessageStatus.REVOKED);
         message.setUpdatedAt(System.currentTimeMillis());
         messageRepository.save(message);
+        if (!wasRevoked) {
+            conversationMemberRepository.revokeReadCount(message.getConversation().getId(), userId, messageId);
+            conversationMessageCounter.countRevoked(message.getConversation().getId());
+        }
+        recentMessageCache.refresh(message);
         
         // Notify all members in conversation that message was revoked
         MessageResponse response = MessageResponse.builder()
@@ -246,7 +314,7 @@ public class MessageService {
                 .updatedAt(message.getUpdatedAt())
                 .build();
         
-        webSocketService.sendMessageToConversation(message.getConversation().getId(), response);
+        eventPublisher.publishEvent(new MessageChangedEvent(message.getConversation().getId(), response));
     }
 
     @Transactional
@@ -254,8 +322,13 @@ public class MessageService {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new AppException(ErrorCode.MESSAGE_NOT_FOUND));
 
-        // Kiểm tra xem message đã bị ẩn chưa
-        if (hiddenMessageRepository.existsByUser_UserIdAndMessage_Id(userId, messageId)) {
+        // Kiểm tra xem message đã bị ẩn chưa (riêng lẻ hoặc nằm trước mốc xóa lịch sử)
+        Integer hiddenBefore = conversationMemberRepository
+                .findByConversation_IdAndUser_UserId(message.getConversation().getId(), userId)
+                .map(ConversationMember::getHiddenBeforeMessageId)
+                .orElse(null);
+        if ((hiddenBefore != null && messageId < hiddenBefore)
+                || hiddenMessageRepository.existsByUser_UserIdAndMessage_Id(userId, messageId)) {
             return;
         }
 
@@ -267,6 +340,26 @@ public class MessageService {
         hidden.setMessage(message);
         hidden.setHiddenAt(System.currentTimeMillis());
         hiddenMessageRepository.save(hidden);
+        hiddenMessageCache.add(userId, messageId);
+    }
+
+    /**
+     * "Xóa lịch sử phía tôi": ẩn toàn bộ tin hiện có bằng một mốc trên member thay vì một dòng
+     * hidden_messages cho mỗi tin. Đồng thời đánh dấu đã đọc tới tin cuối và bỏ các dòng hidden_messages cũ hơn mốc.
+     */
+    @Transactional
+    public void clearHistoryForMe(Integer conversationId, Integer userId) {
+        Integer maxId = messageRepository.findMaxIdByConversationId(conversationId);
+        if (maxId == null) {
+            return;
+        }
+        int updated = conversationMemberRepository.clearHistory(conversationId, userId, maxId + 1);
+        if (updated == 0) {
+            throw new AppException(ErrorCode.MEMBER_NOT_FOUND);
+        }
+        hiddenMessageRepository.deleteHiddenBefore(userId, conversationId, maxId + 1);
+        senderContextCache.evict(userId, conversationId);
+        hiddenMessageCache.evict(userId);
     }
 
     @Transactional
@@ -279,7 +372,109 @@ public class MessageService {
 
         Page<Message> messagePage = messageRepository.findVisibleThreadMessages(threadId, userId, pageable);
 
-        return messagePage.map(this::toMessageResponseWithInteractions);
+        return hydratePage(messagePage);
+    }
+
+    public MessageWindowResponse getThreadHistory(Integer threadId, Integer userId,
+                                                  Integer before, Integer after, int size) {
+        int limit = clampWindowSize(size);
+        if (after != null) {
+            Slice<Message> slice = threadAfter(threadId, userId, after,
+                    PageRequest.of(0, limit, Sort.by("id").ascending()));
+            return buildWindow(newestFirst(slice.getContent()), true, slice.hasNext());
+        }
+
+        Slice<Message> slice = threadBefore(threadId, userId, before != null ? before : Integer.MAX_VALUE,
+                PageRequest.of(0, limit, Sort.by("id").descending()));
+        return buildWindow(slice.getContent(), slice.hasNext(), before != null);
+    }
+
+    private Slice<Message> channelBefore(Integer conversationId, Integer userId, int beforeId, Pageable pageable) {
+        return visibleSlice(userId, beforeId, pageable,
+                (cursor, p) -> messageRepository.findChannelMessagesBefore(conversationId, userId, cursor, p),
+                (cursor, p) -> messageRepository.findVisibleChannelMessagesBefore(conversationId, userId, cursor, p));
+    }
+
+    private Slice<Message> channelAfter(Integer conversationId, Integer userId, int afterId, Pageable pageable) {
+        return visibleSlice(userId, afterId, pageable,
+                (cursor, p) -> messageRepository.findChannelMessagesAfter(conversationId, userId, cursor, p),
+                (cursor, p) -> messageRepository.findVisibleChannelMessagesAfter(conversationId, userId, cursor, p));
+    }
+
+    private Slice<Message> threadBefore(Integer threadId, Integer userId, int beforeId, Pageable pageable) {
+        return visibleSlice(userId, beforeId, pageable,
+                (cursor, p) -> messageRepository.findThreadMessagesBefore(threadId, userId, cursor, p),
+                (cursor, p) -> messageRepository.findVisibleThreadMessagesBefore(threadId, userId, cursor, p));
+    }
+
+    private Slice<Message> threadAfter(Integer threadId, Integer userId, int afterId, Pageable pageable) {
+        return visibleSlice(userId, afterId, pageable,
+                (cursor, p) -> messageRepository.findThreadMessagesAfter(threadId, userId, cursor, p),
+                (cursor, p) -> messageRepository.findVisibleThreadMessagesAfter(threadId, userId, cursor, p));
+    }
+
+    /**
+     * Keyset qua query không join hidden_messages rồi lọc tin đã ẩn bằng HiddenMessageCache;
+     * nếu bị lọc bớt thì phần còn thiếu (từ id cuối cùng) lấy bằng query anti-join, tối đa 2 query.
+     * User không cache được thì dùng thẳng query anti-join.
+     */
+    private Slice<Message> visibleSlice(Integer userId, int cursor, Pageable pageable,
+                                        KeysetQuery plain, KeysetQuery antiJoin) {
+        IntSet hidden = hiddenMessageCache.get(userId);
+        if (hidden == null) {
+            return antiJoin.fetch(cursor, pageable);
+        }
+        int limit = pageable.getPageSize();
+        List<Message> visible = new ArrayList<>(limit);
+        Slice<Message> slice = plain.fetch(cursor, pageable);
+        for (Message message : slice.getContent()) {
+            if (!hidden.contains(message.getId())) {
+                visible.add(message);
+            }
+            cursor = message.getId();
+        }
+        if (visible.size() >= limit || !slice.hasNext()) {
+            return new SliceImpl<>(visible, pageable, slice.hasNext());
+        }
+
+        // Một đoạn dài tin đã ẩn (vd. ẩn hàng loạt) sẽ bắt lặp nhiều vòng: phần còn thiếu lấy bằng một query anti-join
+        Slice<Message> rest = antiJoin.fetch(cursor, PageRequest.of(0, limit - visible.size(), pageable.getSort()));
+        visible.addAll(rest.getContent());
+        return new SliceImpl<>(visible, pageable, rest.hasNext());
+    }
+
+    @FunctionalInterface
+    private interface KeysetQuery {
+        Slice<Message> fetch(int cursor, Pageable pageable);
+    }
+
+    private Page<MessageResponse> hydratePage(Page<Message> messagePage) {
+        List<MessageResponse> content = messageHydrationService.hydrate(messagePage.getContent());
+        return new PageImpl<>(content, messagePage.getPageable(), messagePage.getTotalElements());
+    }
+
+    private MessageWindowResponse buildWindow(List<Message> newestFirst, boolean hasMoreBefore, boolean hasMoreAfter) {
+        return toWindow(messageHydrationService.hydrate(newestFirst), hasMoreBefore, hasMoreAfter);
+    }
+
+    private MessageWindowResponse toWindow(List<MessageResponse> messages, boolean hasMoreBefore, boolean hasMoreAfter) {
+        return MessageWindowResponse.builder()
+                .messages(messages)
+                .afterCursor(messages.isEmpty() ? null : messages.get(0).getId())
+                .beforeCursor(messages.isEmpty() ? null : messages.get(messages.size() - 1).getId())
+                .hasMoreBefore(!messages.isEmpty() && hasMoreBefore)
+                .hasMoreAfter(!messages.isEmpty() && hasMoreAfter)
+                .build();
+    }
+
+    private List<Message> newestFirst(List<Message> oldestFirst) {
+        List<Message> reversed = new ArrayList<>(oldestFirst);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    private int clampWindowSize(int size) {
+        return Math.max(1, Math.min(size, MAX_WINDOW_SIZE));
     }
 
     public Page<MessageSearchResponse> searchMessages(Integer conversationId, Integer userId, String keyword, int page, int size) {
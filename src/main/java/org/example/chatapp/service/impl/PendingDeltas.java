@@ -0,0 +1,43 @@
+package org.example.chatapp.service.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delta cộng dồn trong RAM theo khóa, lấy ra theo lô để ghi xuống DB.
+ * add (merge) và drain (remove) đều nguyên tử theo khóa: mỗi increment hoặc nằm trong lô vừa lấy,
+ * hoặc còn lại cho lô sau, không bị mất dù thread add bị chậm qua nhiều lần drain.
+ * drain/restore do một flush gọi tại một thời điểm (caller tự đồng bộ).
+ */
+final class PendingDeltas<K extends Comparable<K>> {
+
+    private final ConcurrentHashMap<K, Long> pending = new ConcurrentHashMap<>();
+
+    void add(K key, long delta) {
+        pending.merge(key, delta, Long::sum);
+    }
+
+    long get(K key) {
+        return pending.getOrDefault(key, 0L);
+    }
+
+    /**
+     * Lấy toàn bộ delta khác 0, sắp theo khóa (ghi theo thứ tự khóa để các flush không deadlock với nhau).
+     */
+    TreeMap<K, Long> drain() {
+        TreeMap<K, Long> deltas = new TreeMap<>();
+        for (K key : pending.keySet()) {
+            Long delta = pending.remove(key);
+            if (delta != null && delta != 0) {
+                deltas.put(key, delta);
+            }
+        }
+        return deltas;
+    }
+
+    // Ghi lỗi: trả delta lại để lần flush sau thử lại
+    void restore(Map<K, Long> deltas) {
+        deltas.forEach(this::add);
+    }
+}
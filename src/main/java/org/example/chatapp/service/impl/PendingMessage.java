@@ -0,0 +1,24 @@
+package org.example.chatapp.service.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.chatapp.dto.request.CreateMessageRequest;
+
+/**
+ * Tin nhắn đã nhận qua STOMP nhưng chưa ghi xuống DB (chế độ ingest batched).
+ */
+@Getter
+@AllArgsConstructor
+public class PendingMessage {
+    private final CreateMessageRequest request;
+    private final SenderContext sender;
+    private final long enqueuedAt;
+
+    public Integer getConversationId() {
+        return sender.getConversationId();
+    }
+
+    public Integer getUserId() {
+        return sender.getUserId();
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.service.event.UserNotificationEvent;
+import org.example.chatapp.ultis.IntSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trạng thái online theo user trong instance hiện tại, đếm theo WebSocket session (nhiều tab/thiết bị).
+ * Disconnect phải kéo dài quá offline-grace-ms mới tính là OFFLINE, nên reconnect nhanh không gây nhấp nháy.
+ * Thay đổi được gom mỗi flush-interval-ms và gửi một lần cho mỗi user online có chung conversation
+ * (/user/queue/notifications), thay vì gửi vào từng conversation.
+ */
+@Service
+public class PresenceService {
+
+    public static final String ONLINE = "ONLINE";
+    public static final String OFFLINE = "OFFLINE";
+
+    private final ConversationMembershipIndex membershipIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long offlineGraceMs;
+
+    private final Map<Integer, Presence> presences = new HashMap<>();
+    // User có connect/disconnect chưa được xử lý ở flush
+    private final Set<Integer> dirty = new HashSet<>();
+
+    public PresenceService(ConversationMembershipIndex membershipIndex,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${app.presence.offline-grace-ms:10000}") long offlineGraceMs) {
+        this.membershipIndex = membershipIndex;
+        this.eventPublisher = eventPublisher;
+        this.offlineGraceMs = offlineGraceMs;
+    }
+
+    public void connect(Integer userId, String sessionId) {
+        synchronized (presences) {
+            Presence presence = presences.computeIfAbsent(userId, id -> new Presence());
+            presence.sessions.add(sessionId);
+            presence.offlineAt = 0;
+            dirty.add(userId);
+        }
+    }
+
+    // Gọi lặp lại cho cùng session (DISCONNECT frame rồi đóng socket) không bị đếm hai lần
+    public void disconnect(Integer userId, String sessionId) {
+        synchronized (presences) {
+            Presence presence = presences.get(userId);
+            if (presence != null && presence.sessions.remove(sessionId) && presence.sessions.isEmpty()) {
+                presence.offlineAt = System.currentTimeMillis() + offlineGraceMs;
+                dirty.add(userId);
+            }
+        }
+    }
+
+    /**
+     * Trạng thái hiện tại của các user có chung ít nhất một conversation với viewer (và chính viewer);
+     * id khác bị bỏ khỏi kết quả, giống phạm vi nhận thông báo presence qua WebSocket.
+     */
+    public Map<Integer, String> snapshotFor(Integer viewerId, Collection<Integer> userIds) {
+        Set<Integer> remaining = new HashSet<>(userIds);
+        Set<Integer> visible = new HashSet<>();
+        if (remaining.remove(viewerId)) {
+            visible.add(viewerId);
+        }
+        IntSet conversationIds = membershipIndex.conversationsOf(viewerId);
+        for (int i = 0; i < conversationIds.size() && !remaining.isEmpty(); i++) {
+            IntSet members = membershipIndex.membersOf(conversationIds.get(i));
+            for (Iterator<Integer> it = remaining.iterator(); it.hasNext(); ) {
+                Integer userId = it.next();
+                if (members.contains(userId)) {
+                    visible.add(userId);
+                    it.remove();
+                }
+            }
+        }
+        return snapshot(userIds.stream().filter(visible::contains).distinct().toList());
+    }
+
+    /**
+     * Trạng thái hiện tại của danh sách user (user trong thời gian grace vẫn là ONLINE).
+     */
+    public Map<Integer, String> snapshot(Collection<Integer> userIds) {
+        Map<Integer, String> result = new LinkedHashMap<>();
+        synchronized (presences) {
+            for (Integer userId : userIds) {
+                result.put(userId, isOnline(presences.get(userId)) ? ONLINE : OFFLINE);
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval-ms:1000}")
+    public void flush() {
+        Map<Integer, String> changes = new HashMap<>();
+        long now = System.currentTimeMillis();
+        synchronized (presences) {
+            dirty.removeIf(userId -> {
+                Presence presence = presences.get(userId);
+                if (presence == null) {
+                    return true;
+                }
+                if (!presence.sessions.isEmpty()) {
+                    if (!presence.announced) {
+                        presence.announced = true;
+                        changes.put(userId, ONLINE);
+                    }
+                    return true;
+                }
+                if (!presence.announced) {
+                    // Connect rồi disconnect trong cùng một chu kỳ: chưa ai thấy ONLINE nên bỏ qua
+                    presences.remove(userId);
+                    return true;
+                }
+                if (now < presence.offlineAt) {
+                    return false;
+                }
+                presences.remove(userId);
+                changes.put(userId, OFFLINE);
+                return true;
+            });
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        // recipient -> các thay đổi mà user đó quan tâm (có chung ít nhất một conversation)
+        Map<Integer, List<Map<String, Object>>> deltas = new HashMap<>();
+        changes.forEach((userId, status) -> {
+            Map<String, Object> delta = Map.of("userId", userId, "status", status);
+            for (Integer recipient : interestedUsers(userId)) {
+                deltas.computeIfAbsent(recipient, id -> new ArrayList<>()).add(delta);
+            }
+        });
+        synchronized (presences) {
+            deltas.keySet().removeIf(recipient -> !isOnline(presences.get(recipient)));
+        }
+        deltas.forEach((recipient, statuses) -> {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("type", "PRESENCE_UPDATE");
+            payload.put("statuses", statuses);
+            eventPublisher.publishEvent(new UserNotificationEvent(recipient, payload));
+        });
+    }
+
+    private Set<Integer> interestedUsers(Integer userId) {
+        Set<Integer> users = new HashSet<>();
+        IntSet conversations = membershipIndex.conversationsOf(userId);
+        for (int i = 0; i < conversations.size(); i++) {
+            IntSet members = membershipIndex.membersOf(conversations.get(i));
+            for (int j = 0; j < members.size(); j++) {
+                users.add(members.get(j));
+            }
+        }
+        users.remove(userId);
+        return users;
+    }
+
+    private static boolean isOnline(Presence presence) {
+        return presence != null && (!presence.sessions.isEmpty() || presence.announced);
+    }
+
+    private static final class Presence {
+        private final Set<String> sessions = new HashSet<>(4);
+        // Đã broadcast ONLINE cho user này chưa
+        private boolean announced;
+        // Thời điểm tính là OFFLINE khi không còn session nào
+        private long offlineAt;
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.chatapp.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gom các lần đánh dấu đã đọc theo (conversation, user), chỉ giữ messageId lớn nhất,
+ * rồi ghi xuống DB bằng một batch UPDATE mỗi flush-interval-ms (và khi user disconnect).
+ * Crash chỉ mất tối đa những marker của một chu kỳ flush.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReadMarkerBuffer {
+
+    // Chỉ tiến lên (monotonic), message phải thuộc conversation. read_count cộng thêm số tin của người khác
+    // nằm giữa mốc cũ và mốc mới, không đọc conversations.message_count (có thể còn delta chưa flush).
+    // MySQL gán SET từ trái sang phải nên read_count phải đứng trước last_read_message_id
+    private static final String FLUSH_SQL =
+            "UPDATE conversation_members cm " +
+            "SET cm.read_count = cm.read_count + (SELECT COUNT(*) FROM messages m " +
+            "                                     WHERE m.conversation_id = cm.conversation_id " +
+            "                                     AND m.id > COALESCE(cm.last_read_message_id, 0) " +
+            "                                     AND m.id <= ? " +
+            "                                     AND m.sender_id <> cm.user_id " +
+            "                                     AND m.status <> 'REVOKED'), " +
+            "    cm.last_read_message_id = ?, cm.last_read_at = ? " +
+            "WHERE cm.conversation_id = ? AND cm.user_id = ? " +
+            "AND (cm.last_read_message_id IS NULL OR cm.last_read_message_id < ?) " +
+            "AND EXISTS (SELECT 1 FROM messages m2 WHERE m2.id = ? AND m2.conversation_id = ?)";
+
+    // Số tin chưa đọc nếu marker đang chờ được ghi: marker không lùi mốc đã lưu, marker không thuộc conversation
+    // (flush bỏ qua) thì không trả dòng nào
+    private static final String PENDING_UNSEEN_SQL =
+            "SELECT COUNT(m.id) FROM conversation_members cm " +
+            "LEFT JOIN messages m ON m.conversation_id = cm.conversation_id " +
+            "                    AND m.id > GREATEST(?, COALESCE(cm.last_read_message_id, 0)) " +
+            "                    AND m.sender_id <> cm.user_id " +
+            "                    AND m.status <> 'REVOKED' " +
+            "WHERE cm.conversation_id = ? AND cm.user_id = ? " +
+            "AND EXISTS (SELECT 1 FROM messages m2 WHERE m2.id = ? AND m2.conversation_id = cm.conversation_id) " +
+            "GROUP BY cm.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<Long, Marker> pending = new ConcurrentHashMap<>();
+
+    public void mark(Integer conversationId, Integer userId, Integer messageId) {
+        Marker marker = new Marker(conversationId, userId, messageId, System.currentTimeMillis());
+        pending.merge(key(conversationId, userId), marker, Marker::max);
+    }
+
+    @Scheduled(fixedDelayString = "${app.read-marker.flush-interval-ms:300}")
+    public void flush() {
+        List<Marker> batch = new ArrayList<>();
+        for (Long key : pending.keySet()) {
+            Marker marker = pending.remove(key);
+            if (marker != null) {
+                batch.add(marker);
+            }
+        }
+        write(batch);
+    }
+
+    /**
+     * Ghi ngay các marker đang chờ của một user khi disconnect.
+     * Không gọi trên đường đọc (GET sidebar): mỗi lần tải trang sẽ thành một lần ghi DB.
+     */
+    public void flushUser(Integer userId) {
+        List<Marker> batch = new ArrayList<>();
+        for (Map.Entry<Long, Marker> entry : pending.entrySet()) {
+            if (entry.getValue().userId.equals(userId) && pending.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getValue());
+            }
+        }
+        write(batch);
+    }
+
+    /**
+     * unseenCount của các conversation mà user còn marker chưa flush (conversationId -> số tin chưa đọc),
+     * để GET sidebar thấy ngay lần đánh dấu đã đọc mà không phải ghi DB trên đường đọc.
+     */
+    public Map<Integer, Integer> pendingUnseen(Integer userId) {
+        Map<Integer, Integer> unseen = new HashMap<>();
+        for (Marker marker : pending.values()) {
+            if (!marker.userId.equals(userId)) {
+                continue;
+            }
+            List<Integer> counts = jdbcTemplate.queryForList(PENDING_UNSEEN_SQL, Integer.class,
+                    marker.messageId, marker.conversationId, userId, marker.messageId);
+            if (!counts.isEmpty()) {
+                unseen.put(marker.conversationId, counts.get(0));
+            }
+        }
+        return unseen;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void write(List<Marker> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batch, batch.size(),
+                    (ps, m) -> {
+                        ps.setInt(1, m.messageId);
+                        ps.setInt(2, m.messageId);
+                        ps.setLong(3, m.readAt);
+                        ps.setInt(4, m.conversationId);
+                        ps.setInt(5, m.userId);
+                        ps.setInt(6, m.messageId);
+                        ps.setInt(7, m.messageId);
+                        ps.setInt(8, m.conversationId);
+                    }));
+        } catch (Exception e) {
+            // Đưa lại vào buffer để lần flush sau thử lại, vẫn giữ marker lớn nhất
+            log.warn("Failed to flush {} read markers: {}", batch.size(), e.getMessage());
+            batch.forEach(m -> pending.merge(key(m.conversationId, m.userId), m, Marker::max));
+        }
+    }
+
+    private static long key(Integer conversationId, Integer userId) {
+        return ((long) conversationId << 32) | (userId & 0xffffffffL);
+    }
+
+    private static final class Marker {
+        private final Integer conversationId;
+        private final Integer userId;
+        private final int messageId;
+        private final long readAt;
+
+        private Marker(Integer conversationId, Integer userId, int messageId, long readAt) {
+            this.conversationId = conversationId;
+            this.userId = userId;
+            this.messageId = messageId;
+            this.readAt = readAt;
+        }
+
+        private static Marker max(Marker a, Marker b) {
+            return a.messageId >= b.messageId ? a : b;
+        }
+    }
+}
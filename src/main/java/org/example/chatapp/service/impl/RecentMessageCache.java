@@ -0,0 +1,259 @@
+package org.example.chatapp.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.example.chatapp.dto.response.MessageResponse;
+import org.example.chatapp.entity.Message;
+import org.example.chatapp.repository.HiddenMessageRepository;
+import org.example.chatapp.repository.MessageRepository;
+import org.example.chatapp.ultis.IntSet;
+import org.example.chatapp.ultis.StripedLruMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Cache N tin nhắn mới nhất (top-level, đã hydrate) của mỗi conversation để trả page đầu
+ * mà không cần query + hydrate lại. Số conversation giữ trong RAM có giới hạn, evict theo LRU.
+ * Tail chỉ chứa dữ liệu chung; lọc tin nhắn đã ẩn theo từng user được làm lúc đọc.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecentMessageCache {
+
+    private static final int STRIPES = 64;
+
+    private final MessageRepository messageRepository;
+    private final HiddenMessageRepository hiddenMessageRepository;
+    private final HiddenMessageCache hiddenMessageCache;
+    private final MessageHydrationService messageHydrationService;
+
+    @Value("${app.message-cache.tail-size:50}")
+    private int tailSize;
+
+    @Value("${app.message-cache.max-conversations:1000}")
+    private int maxConversations;
+
+    // LRU chia stripe theo conversationId: các conversation khác stripe không tranh nhau lock
+    private StripedLruMap<Integer, Tail> tails;
+
+    @PostConstruct
+    void init() {
+        tails = new StripedLruMap<>(maxConversations);
+    }
+
+    // Đếm số lần ghi theo stripe của conversationId, dùng để bỏ kết quả warm đã cũ
+    private final AtomicLongArray writeStamps = new AtomicLongArray(STRIPES);
+
+    /**
+     * Trả về tối đa size tin nhắn mới nhất (mới nhất trước) mà user nhìn thấy,
+     * hoặc null nếu cache không đủ dữ liệu và caller phải đọc từ DB.
+     * visibleFromId: mốc "xóa lịch sử" của member, tin có id nhỏ hơn bị bỏ.
+     */
+    public List<MessageResponse> getLatest(Integer conversationId, Integer userId, int visibleFromId, int size) {
+        if (size > tailSize) {
+            return null;
+        }
+
+        Snapshot snapshot = snapshot(conversationId);
+        if (snapshot == null) {
+            snapshot = warm(conversationId);
+        }
+        if (snapshot.messages.isEmpty()) {
+            return snapshot.complete ? new ArrayList<>() : null;
+        }
+
+        IntPredicate hidden = hiddenFilter(userId, snapshot.messages);
+
+        List<MessageResponse> visible = new ArrayList<>(size);
+        for (MessageResponse response : snapshot.messages) {
+            if (response.getId() < visibleFromId) {
+                // Tail sắp mới nhất trước: từ đây trở đi đều đã bị xóa lịch sử
+                return visible;
+            }
+            if (!hidden.test(response.getId())) {
+                visible.add(response);
+                if (visible.size() == size) {
+                    return visible;
+                }
+            }
+        }
+        // Không đủ size tin sau khi lọc: chỉ dùng được nếu tail đã chứa toàn bộ conversation
+        return snapshot.complete ? visible : null;
+    }
+
+    // Ưu tiên HiddenMessageCache; user ẩn quá nhiều tin thì hỏi DB cho đúng các id trong tail
+    private IntPredicate hiddenFilter(Integer userId, List<MessageResponse> messages) {
+        IntSet cached = hiddenMessageCache.get(userId);
+        if (cached != null) {
+            return cached::contains;
+        }
+        List<Integer> ids = messages.stream().map(MessageResponse::getId).toList();
+        Set<Integer> hidden = new HashSet<>(hiddenMessageRepository.findHiddenMessageIdsIn(userId, ids));
+        return hidden::contains;
+    }
+
+    /**
+     * Thêm tin nhắn mới vào tail sau khi transaction commit. Tin trong thread không nằm trong tail.
+     */
+    public void append(MessageResponse response) {
+        if (response.getThreadId() != null) {
+            return;
+        }
+        Integer conversationId = response.getConversationId();
+        afterCommit(() -> {
+            markWrite(conversationId);
+            tails.locked(conversationId, map -> {
+                Tail tail = map.get(conversationId);
+                if (tail != null) {
+                    tail.put(response, tailSize);
+                }
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Build lại response của tin nhắn nếu nó đang nằm trong tail (sửa, thu hồi, reaction, pin).
+     */
+    public void refresh(Message message) {
+        if (message.getThread() != null) {
+            return;
+        }
+        Integer conversationId = message.getConversation().getId();
+        afterCommit(() -> {
+            markWrite(conversationId);
+            if (!contains(conversationId, message.getId())) {
+                return;
+            }
+            MessageResponse response = messageHydrationService.hydrate(message);
+            tails.locked(conversationId, map -> {
+                Tail tail = map.get(conversationId);
+                if (tail != null) {
+                    tail.replace(response);
+                }
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Cập nhật số reply hiển thị trên tin gốc của thread.
+     */
+    public void adjustThreadReplyCount(Integer conversationId, Integer threadId, int delta) {
+        afterCommit(() -> {
+            markWrite(conversationId);
+            tails.locked(conversationId, map -> {
+                Tail tail = map.get(conversationId);
+                MessageResponse root = tail != null ? tail.messages.get(threadId) : null;
+                if (root != null) {
+                    MessageResponse copy = root.toBuilder().build();
+                    int current = copy.getThreadReplyCount() != null ? copy.getThreadReplyCount() : 0;
+                    copy.setThreadReplyCount(Math.max(0, current + delta));
+                    tail.replace(copy);
+                }
+                return null;
+            });
+        });
+    }
+
+    public void evict(Integer conversationId) {
+        markWrite(conversationId);
+        tails.remove(conversationId);
+    }
+
+    private boolean contains(Integer conversationId, Integer messageId) {
+        return tails.locked(conversationId, map -> {
+            Tail tail = map.get(conversationId);
+            return tail != null && tail.messages.containsKey(messageId);
+        });
+    }
+
+    private Snapshot snapshot(Integer conversationId) {
+        return tails.locked(conversationId, map -> {
+            Tail tail = map.get(conversationId);
+            return tail == null ? null : new Snapshot(new ArrayList<>(tail.messages.values()), tail.complete);
+        });
+    }
+
+    private Snapshot warm(Integer conversationId) {
+        long stamp = writeStamps.get(stripe(conversationId));
+
+        Slice<Message> slice = messageRepository.findChannelTail(
+                conversationId, PageRequest.of(0, tailSize, Sort.by("id").descending()));
+        List<MessageResponse> responses = messageHydrationService.hydrate(slice.getContent());
+        boolean complete = !slice.hasNext();
+
+        // Có ghi mới trong lúc đang load thì không đưa kết quả vào cache, lần đọc sau sẽ warm lại
+        tails.locked(conversationId, map -> {
+            if (writeStamps.get(stripe(conversationId)) == stamp && !map.containsKey(conversationId)) {
+                Tail tail = new Tail(complete);
+                responses.forEach(r -> tail.messages.put(r.getId(), r));
+                map.put(conversationId, tail);
+            }
+            return null;
+        });
+        return new Snapshot(responses, complete);
+    }
+
+    private void markWrite(Integer conversationId) {
+        writeStamps.incrementAndGet(stripe(conversationId));
+    }
+
+    private static int stripe(Integer conversationId) {
+        return Math.floorMod(conversationId, STRIPES);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Snapshot {
+        private final List<MessageResponse> messages;
+        private final boolean complete;
+
+        private Snapshot(List<MessageResponse> messages, boolean complete) {
+            this.messages = messages;
+            this.complete = complete;
+        }
+    }
+
+    private static final class Tail {
+        // Sắp theo id giảm dần: phần tử đầu là tin mới nhất
+        private final TreeMap<Integer, MessageResponse> messages = new TreeMap<>(Comparator.reverseOrder());
+        private boolean complete;
+
+        private Tail(boolean complete) {
+            this.complete = complete;
+        }
+
+        private void put(MessageResponse response, int capacity) {
+            messages.put(response.getId(), response);
+            while (messages.size() > capacity) {
+                messages.pollLastEntry();
+                complete = false;
+            }
+        }
+
+        private void replace(MessageResponse response) {
+            messages.computeIfPresent(response.getId(), (id, old) -> response);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.chatapp.service.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.chatapp.service.enums.ConversationRoleEnum;
+
+/**
+ * Thông tin người gửi trong một conversation đủ để ghi và hiển thị tin nhắn
+ * mà không phải load ConversationMember/User. Kèm mốc "xóa lịch sử" để lọc tin khi đọc.
+ */
+@Getter
+@AllArgsConstructor
+public class SenderContext {
+    private final Integer memberId;
+    private final Integer userId;
+    private final Integer conversationId;
+    private final ConversationRoleEnum role;
+    private final String fullName;
+    private final String avatar;
+    private final Integer hiddenBeforeMessageId;
+
+    public int visibleFromId() {
+        return hiddenBeforeMessageId != null ? hiddenBeforeMessageId : 0;
+    }
+}
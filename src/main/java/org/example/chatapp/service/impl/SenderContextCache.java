@@ -0,0 +1,141 @@
+package org.example.chatapp.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.chatapp.entity.ConversationMember;
+import org.example.chatapp.entity.User;
+import org.example.chatapp.exception.AppException;
+import org.example.chatapp.exception.ErrorCode;
+import org.example.chatapp.repository.ConversationMemberRepository;
+import org.example.chatapp.service.event.MembershipChangedEvent;
+import org.example.chatapp.service.event.UserProfileChangedEvent;
+import org.example.chatapp.ultis.StripedLruMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache SenderContext theo (userId, conversationId) cho đường gửi tin nhắn.
+ * Bị xóa khi membership/role thay đổi (MembershipChangedEvent), user đổi profile (UserProfileChangedEvent)
+ * hoặc member xóa lịch sử (evict).
+ * Đường không được chặn vì DB (typing) dùng getIfPresent + warm: miss thì load trên warm executor riêng.
+ */
+@Slf4j
+@Component
+public class SenderContextCache {
+
+    private final ConversationMemberRepository conversationMemberRepository;
+    // Kết quả load từ DB chỉ được cache nếu stripe không bị invalidate xen giữa (version/putIfUnchanged)
+    private final StripedLruMap<Long, SenderContext> cache;
+    // Key đang chờ/đang load trên warmExecutor, mỗi key chỉ load một lần dù có nhiều lần miss
+    private final Set<Long> warming = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor warmExecutor;
+
+    public SenderContextCache(ConversationMemberRepository conversationMemberRepository,
+                              @Value("${app.sender-context.max-entries:50000}") int maxEntries,
+                              @Value("${app.sender-context.warm-threads:2}") int warmThreads,
+                              @Value("${app.sender-context.warm-queue-capacity:1000}") int warmQueueCapacity) {
+        this.conversationMemberRepository = conversationMemberRepository;
+        this.cache = new StripedLruMap<>(maxEntries);
+        this.warmExecutor = new ThreadPoolExecutor(warmThreads, warmThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(warmQueueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "sender-context-warm");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        warmExecutor.shutdownNow();
+    }
+
+    // Chỉ đọc cache, không bao giờ chạm DB
+    public SenderContext getIfPresent(Integer userId, Integer conversationId) {
+        return cache.get(key(conversationId, userId));
+    }
+
+    /**
+     * Load SenderContext vào cache trên warm executor, không chặn thread gọi.
+     * Queue đầy thì bỏ qua: lần miss sau sẽ thử lại.
+     */
+    public void warm(Integer userId, Integer conversationId) {
+        long key = key(conversationId, userId);
+        if (!warming.add(key)) {
+            return;
+        }
+        try {
+            warmExecutor.execute(() -> {
+                try {
+                    get(userId, conversationId);
+                } catch (Exception e) {
+                    log.debug("Cannot load sender context for user {} in conversation {}: {}",
+                            userId, conversationId, e.getMessage());
+                } finally {
+                    warming.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            warming.remove(key);
+        }
+    }
+
+    public SenderContext get(Integer userId, Integer conversationId) {
+        long key = key(conversationId, userId);
+        long loadVersion = cache.version(key);
+        SenderContext context = cache.get(key);
+        if (context != null) {
+            return context;
+        }
+        ConversationMember member = conversationMemberRepository.findWithUser(conversationId, userId)
+                .orElseThrow(() -> new AppException(ErrorCode.MEMBER_NOT_FOUND));
+        User user = member.getUser();
+        context = new SenderContext(member.getId(), user.getUserId(), conversationId,
+                member.getRole(), user.getFullName(), user.getAvatar(), member.getHiddenBeforeMessageId());
+        cache.putIfUnchanged(key, context, loadVersion);
+        return context;
+    }
+
+    // Xóa entry sau khi transaction hiện tại commit
+    public void evict(Integer userId, Integer conversationId) {
+        Runnable action = () -> cache.remove(key(conversationId, userId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMembershipChanged(MembershipChangedEvent event) {
+        for (Integer userId : event.getUserIds()) {
+            cache.remove(key(event.getConversationId(), userId));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProfileChanged(UserProfileChangedEvent event) {
+        int userId = event.getUserId();
+        cache.removeIf(key -> (int) key.longValue() == userId);
+    }
+
+    private static long key(Integer conversationId, Integer userId) {
+        return ((long) conversationId << 32) | (userId & 0xffffffffL);
+    }
+}
@@ -0,0 +1,245 @@
+package org.example.chatapp.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import org.example.chatapp.dto.response.ConversationResponse;
+import org.example.chatapp.repository.ConversationRepository;
+import org.example.chatapp.repository.WorkspaceMemberRepository;
+import org.example.chatapp.service.event.MembershipChangedEvent;
+import org.example.chatapp.service.event.UserProfileChangedEvent;
+import org.example.chatapp.ultis.StripedLruMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache danh sách conversation của sidebar (GET /conversations/user/me) theo user, kèm ETag tính từ nội dung.
+ * - unseenCount không nằm trong phần cache: mỗi lần GET đọc lại bằng một query theo khóa user
+ *   (message_count - read_count, cộng phần ConversationMessageCounter chưa flush),
+ *   và marker đã đọc còn trong ReadMarkerBuffer, nên tin mới/thu hồi/đánh dấu đã đọc không làm snapshot hết hiệu lực.
+ * - Thay đổi của riêng user (được thêm vào workspace/conversation): bỏ entry của user.
+ * - Thay đổi ở mức conversation (tạo, thêm/xóa member, profile trong DM): tăng generation của workspace,
+ *   mọi snapshot của workspace đó hết hiệu lực mà không phải duyệt từng user.
+ * Chỉ invalidate trong instance hiện tại; instance khác thấy thay đổi chậm tối đa ttl-ms.
+ */
+@Component
+public class SidebarSnapshotCache {
+
+    // Member chưa từng đánh dấu đã đọc hiển thị 0 (cùng quy tắc với ConversationService)
+    private static final String UNSEEN_SQL =
+            "SELECT cm.conversation_id, c.message_count, cm.read_count " +
+            "FROM conversation_members cm JOIN conversations c ON c.id = cm.conversation_id " +
+            "WHERE cm.user_id = ? AND cm.last_read_message_id IS NOT NULL " +
+            "AND (cm.role IS NULL OR cm.role <> 'DELETED')";
+
+    private final WorkspaceMemberRepository workspaceMemberRepository;
+    private final ConversationRepository conversationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConversationMessageCounter conversationMessageCounter;
+    private final ReadMarkerBuffer readMarkerBuffer;
+    private final ObjectMapper objectMapper;
+    private final long ttlMs;
+
+    // LRU chia stripe theo userId: GET của các user khác stripe không tranh nhau lock
+    private final StripedLruMap<Integer, Snapshot> snapshots;
+    // userId -> token của lần build đang chạy; invalidate xóa token để kết quả build cũ không được cache.
+    // Chỉ sửa khi đang giữ lock stripe của userId (snapshots.locked) để đi cùng snapshot của user đó
+    private final ConcurrentHashMap<Integer, Object> loading = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> workspaceGenerations = new ConcurrentHashMap<>();
+
+    public SidebarSnapshotCache(WorkspaceMemberRepository workspaceMemberRepository,
+                                ConversationRepository conversationRepository,
+                                JdbcTemplate jdbcTemplate,
+                                ConversationMessageCounter conversationMessageCounter,
+                                ReadMarkerBuffer readMarkerBuffer,
+                                ObjectMapper objectMapper,
+                                @Value("${app.sidebar-cache.ttl-ms:60000}") long ttlMs,
+                                @Value("${app.sidebar-cache.max-users:20000}") int maxUsers) {
+        this.workspaceMemberRepository = workspaceMemberRepository;
+        this.conversationRepository = conversationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.conversationMessageCounter = conversationMessageCounter;
+        this.readMarkerBuffer = readMarkerBuffer;
+        this.objectMapper = objectMapper;
+        this.ttlMs = ttlMs;
+        this.snapshots = new StripedLruMap<>(maxUsers);
+    }
+
+    /**
+     * Snapshot còn hiệu lực của user (hoặc build lại bằng loader - query sidebar đầy đủ),
+     * với unseenCount hiện tại đè lên. ETag gồm cả ETag của snapshot lẫn các unseenCount.
+     */
+    public Snapshot get(Integer userId, Supplier<List<ConversationResponse>> loader) {
+        Snapshot snapshot = snapshot(userId, loader);
+        Map<Integer, Integer> unseenCounts = new HashMap<>();
+        jdbcTemplate.query(UNSEEN_SQL, (RowCallbackHandler) rs -> unseenCounts.put(rs.getInt(1),
+                conversationMessageCounter.unseen(rs.getInt(1), userId, rs.getInt(2), rs.getInt(3))), userId);
+        // Marker đã đọc chưa flush có hiệu lực ngay
+        unseenCounts.putAll(readMarkerBuffer.pendingUnseen(userId));
+
+        List<ConversationResponse> conversations = new ArrayList<>(snapshot.conversations.size());
+        StringBuilder version = new StringBuilder(snapshot.etag);
+        for (ConversationResponse conversation : snapshot.conversations) {
+            int unseenCount = unseenCounts.getOrDefault(conversation.getId(), 0);
+            version.append(',').append(unseenCount);
+            // Không sửa object trong snapshot: các request khác đang dùng chung
+            conversations.add(Objects.equals(conversation.getUnseenCount(), unseenCount)
+                    ? conversation
+                    : conversation.toBuilder().unseenCount(unseenCount).build());
+        }
+        String etag = "\"" + DigestUtils.md5DigestAsHex(version.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        return new Snapshot(List.copyOf(conversations), etag, snapshot.workspaceIds, snapshot.generations,
+                snapshot.builtAt);
+    }
+
+    private Snapshot snapshot(Integer userId, Supplier<List<ConversationResponse>> loader) {
+        Object token = new Object();
+        Snapshot cached = snapshots.locked(userId, map -> {
+            Snapshot current = map.get(userId);
+            if (current != null && isValid(current)) {
+                return current;
+            }
+            map.remove(userId);
+            loading.put(userId, token);
+            return null;
+        });
+        if (cached != null) {
+            return cached;
+        }
+
+        Snapshot built = null;
+        try {
+            // Đọc generation trước khi build: thay đổi xảy ra trong lúc build sẽ làm snapshot hết hiệu lực ngay
+            int[] workspaceIds = workspaceMemberRepository.findWorkspaceIdsByUserId(userId).stream()
+                    .mapToInt(Integer::intValue).toArray();
+            long[] generations = new long[workspaceIds.length];
+            for (int i = 0; i < workspaceIds.length; i++) {
+                generations[i] = workspaceGenerations.getOrDefault(workspaceIds[i], 0L);
+            }
+            List<ConversationResponse> conversations = List.copyOf(loader.get());
+            built = new Snapshot(conversations, etag(conversations), workspaceIds, generations,
+                    System.currentTimeMillis());
+            return built;
+        } finally {
+            Snapshot result = built;
+            snapshots.locked(userId, map -> {
+                if (loading.remove(userId, token) && result != null) {
+                    map.put(userId, result);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Bỏ snapshot của user sau khi transaction commit.
+     */
+    public void invalidateUser(Integer userId) {
+        afterCommit(() -> evict(userId));
+    }
+
+    public void invalidateWorkspace(Integer workspaceId) {
+        afterCommit(() -> workspaceGenerations.merge(workspaceId, 1L, Long::sum));
+    }
+
+    public void invalidateAll() {
+        afterCommit(() -> {
+            // Xóa token trước: build đang chạy không được cache kết quả
+            loading.clear();
+            snapshots.clear();
+        });
+    }
+
+    // totalMembers của channel public hiện với mọi user trong workspace, nên bump cả workspace
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMembershipChanged(MembershipChangedEvent event) {
+        conversationRepository.findWorkspaceIdById(event.getConversationId())
+                .ifPresent(workspaceId -> workspaceGenerations.merge(workspaceId, 1L, Long::sum));
+        event.getUserIds().forEach(this::evict);
+    }
+
+    // Tên/avatar của user xuất hiện trong DM của người khác
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProfileChanged(UserProfileChangedEvent event) {
+        for (Integer workspaceId : workspaceMemberRepository.findWorkspaceIdsByUserId(event.getUserId())) {
+            workspaceGenerations.merge(workspaceId, 1L, Long::sum);
+        }
+    }
+
+    private void evict(Integer userId) {
+        snapshots.locked(userId, map -> {
+            map.remove(userId);
+            loading.remove(userId);
+            return null;
+        });
+    }
+
+    private boolean isValid(Snapshot snapshot) {
+        if (System.currentTimeMillis() - snapshot.builtAt >= ttlMs) {
+            return false;
+        }
+        for (int i = 0; i < snapshot.workspaceIds.length; i++) {
+            if (workspaceGenerations.getOrDefault(snapshot.workspaceIds[i], 0L) != snapshot.generations[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ETag theo nội dung: build lại mà không có gì đổi (vd. tin do chính user gửi) vẫn trả được 304
+    private String etag(List<ConversationResponse> conversations) {
+        try {
+            return "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(conversations)) + "\"";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize sidebar snapshot", e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public static final class Snapshot {
+        @Getter
+        private final List<ConversationResponse> conversations;
+        @Getter
+        private final String etag;
+        private final int[] workspaceIds;
+        private final long[] generations;
+        private final long builtAt;
+
+        private Snapshot(List<ConversationResponse> conversations, String etag,
+                         int[] workspaceIds, long[] generations, long builtAt) {
+            this.conversations = conversations;
+            this.etag = etag;
+            this.workspaceIds = workspaceIds;
+            this.generations = generations;
+            this.builtAt = builtAt;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.chatapp.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.chatapp.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Định kỳ tính lại messages.thread_reply_count từ messages.thread_id
+ * để sửa các lệch do delta của ThreadReplyCounter bị mất (crash trước khi flush).
+ * Thread có reply trong quiet-period-ms gần nhất được để lại cho lần sau: delta của reply đó có thể chưa flush
+ * (ở instance này hoặc instance khác), tính lại lúc này rồi flush sẽ cộng thừa vĩnh viễn.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ThreadReplyCountReconciler {
+
+    private final MessageRepository messageRepository;
+    private final ThreadReplyCounter threadReplyCounter;
+    private final TransactionTemplate transactionTemplate;
+
+    // Phải lớn hơn hẳn flush-interval-ms + thời gian transaction gửi reply dài nhất
+    @Value("${app.thread-reply.reconcile-quiet-period-ms:300000}")
+    private long quietPeriodMs;
+
+    @Scheduled(fixedDelayString = "${app.thread-reply.reconcile-interval-ms:21600000}",
+            initialDelayString = "${app.thread-reply.reconcile-initial-delay-ms:900000}")
+    public void reconcile() {
+        // Flush delta của instance này; reply commit sau đó hay còn chờ ở instance khác nằm trong quiet period
+        long quietSince = System.currentTimeMillis() - quietPeriodMs;
+        threadReplyCounter.flush();
+        Integer fixed = transactionTemplate.execute(status -> messageRepository.reconcileThreadReplyCounts(quietSince));
+        if (fixed != null && fixed > 0) {
+            log.info("Reconciled thread_reply_count for {} messages", fixed);
+        }
+    }
+}
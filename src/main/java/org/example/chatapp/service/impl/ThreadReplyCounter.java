@@ -0,0 +1,76 @@
+package org.example.chatapp.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đếm reply của thread trong RAM (PendingDeltas) rồi cộng dồn xuống
+ * messages.thread_reply_count theo batch, để reply trong thread nóng không tranh nhau row lock của tin gốc.
+ * Giá trị trả cho client = giá trị đã lưu + pending(threadId).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ThreadReplyCounter {
+
+    private static final String FLUSH_SQL =
+            "UPDATE messages SET thread_reply_count = GREATEST(thread_reply_count + ?, 0) WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final PendingDeltas<Integer> pending = new PendingDeltas<>();
+
+    /**
+     * Tăng/giảm số reply sau khi transaction hiện tại commit (rollback thì không tính).
+     */
+    public void add(Integer threadId, int delta) {
+        Runnable action = () -> pending.add(threadId, delta);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public int pending(Integer threadId) {
+        return (int) pending.get(threadId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.thread-reply.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<Integer, Long> deltas = pending.drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((threadId, delta) -> batch.add(new Object[]{delta, threadId}));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batch));
+        } catch (Exception e) {
+            log.warn("Failed to flush {} thread reply counters: {}", batch.size(), e.getMessage());
+            pending.restore(deltas);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.chatapp.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.chatapp.config.FanoutExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typing indicator xử lý hoàn toàn trong RAM: quyền lấy từ ConversationMembershipIndex, tên/avatar từ SenderContextCache.
+ * Mỗi (conversation, user) gửi isTyping=true tối đa một lần mỗi throttle-ms; không nhận frame mới trong expire-ms
+ * thì tự gửi isTyping=false. Frame JSON được encode một lần cho mỗi lượt gõ và gửi trên FanoutExecutor.
+ */
+@Slf4j
+@Service
+public class TypingService {
+
+    private final ConversationMembershipIndex membershipIndex;
+    private final SenderContextCache senderContextCache;
+    private final WebSocketService webSocketService;
+    private final FanoutExecutor fanoutExecutor;
+    private final ObjectMapper objectMapper;
+    private final long throttleMs;
+    private final long expireMs;
+
+    private final ConcurrentHashMap<Long, Typing> typing = new ConcurrentHashMap<>();
+
+    public TypingService(ConversationMembershipIndex membershipIndex,
+                         SenderContextCache senderContextCache,
+                         WebSocketService webSocketService,
+                         FanoutExecutor fanoutExecutor,
+                         ObjectMapper objectMapper,
+                         @Value("${app.typing.throttle-ms:3000}") long throttleMs,
+                         @Value("${app.typing.expire-ms:6000}") long expireMs) {
+        this.membershipIndex = membershipIndex;
+        this.senderContextCache = senderContextCache;
+        this.webSocketService = webSocketService;
+        this.fanoutExecutor = fanoutExecutor;
+        this.objectMapper = objectMapper;
+        this.throttleMs = throttleMs;
+        this.expireMs = expireMs;
+    }
+
+    public void onTyping(Integer conversationId, Integer userId, boolean isTyping) {
+        if (conversationId == null || !membershipIndex.isMember(conversationId, userId)) {
+            return;
+        }
+        long key = key(conversationId, userId);
+        long now = System.currentTimeMillis();
+
+        if (!isTyping) {
+            Typing stopped = typing.remove(key);
+            if (stopped != null) {
+                send(conversationId, stopped.stopFrame);
+            }
+            return;
+        }
+
+        Typing current = typing.get(key);
+        if (current == null) {
+            current = start(conversationId, userId, now);
+            if (current == null) {
+                return;
+            }
+            Typing existing = typing.putIfAbsent(key, current);
+            if (existing != null) {
+                current = existing;
+            } else {
+                send(conversationId, current.startFrame);
+                return;
+            }
+        }
+        current.lastSeenAt = now;
+        if (now - current.lastSentAt >= throttleMs) {
+            current.lastSentAt = now;
+            send(conversationId, current.startFrame);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.typing.sweep-interval-ms:1000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        typing.forEach((key, state) -> {
+            if (now - state.lastSeenAt >= expireMs && typing.remove(key, state)) {
+                send(state.conversationId, state.stopFrame);
+            }
+        });
+    }
+
+    // Chỉ đọc SenderContextCache (thường đã warm từ lần gửi tin nhắn), không query DB trên inbound thread:
+    // miss thì bỏ frame này và load nền, frame gõ tiếp theo (client gửi liên tục khi gõ) sẽ dùng được cache
+    private Typing start(Integer conversationId, Integer userId, long now) {
+        SenderContext sender = senderContextCache.getIfPresent(userId, conversationId);
+        if (sender == null) {
+            senderContextCache.warm(userId, conversationId);
+            return null;
+        }
+        try {
+            return new Typing(conversationId,
+                    encode(conversationId, sender, true),
+                    encode(conversationId, sender, false),
+                    now);
+        } catch (Exception e) {
+            // Silent fail - typing is not critical
+            log.debug("Cannot start typing for user {} in conversation {}: {}", userId, conversationId, e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] encode(Integer conversationId, SenderContext sender, boolean isTyping) throws JsonProcessingException {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "TYPING");
+        frame.put("conversationId", conversationId);
+        frame.put("userId", sender.getUserId());
+        frame.put("userName", sender.getFullName());
+        frame.put("avatar", sender.getAvatar());
+        frame.put("isTyping", isTyping);
+        return objectMapper.writeValueAsBytes(frame);
+    }
+
+    private void send(Integer conversationId, byte[] frame) {
+        fanoutExecutor.execute(conversationId, () -> webSocketService.sendJsonToConversation(conversationId, frame));
+    }
+
+    private static long key(Integer conversationId, Integer userId) {
+        return ((long) conversationId << 32) | (userId & 0xffffffffL);
+    }
+
+    private static final class Typing {
+        private final Integer conversationId;
+        private final byte[] startFrame;
+        private final byte[] stopFrame;
+        private volatile long lastSentAt;
+        private volatile long lastSeenAt;
+
+        private Typing(Integer conversationId, byte[] startFrame, byte[] stopFrame, long now) {
+            this.conversationId = conversationId;
+            this.startFrame = startFrame;
+            this.stopFrame = stopFrame;
+            this.lastSentAt = now;
+            this.lastSeenAt = now;
+        }
+    }
+}
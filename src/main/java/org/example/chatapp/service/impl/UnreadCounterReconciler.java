@@ -0,0 +1,61 @@
+package org.example.chatapp.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.chatapp.repository.ConversationMemberRepository;
+import org.example.chatapp.repository.ConversationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Định kỳ tính lại conversations.message_count và conversation_members.read_count từ bảng messages
+ * để sửa các lệch do delta của ConversationMessageCounter/ReadMarkerBuffer bị mất (crash trước khi flush).
+ * Duyệt theo từng khoảng batch-size conversation id, mỗi khoảng một transaction ngắn.
+ * Conversation/member có thay đổi trong quiet-period-ms gần nhất được để lại cho lần sau, như ThreadReplyCountReconciler.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UnreadCounterReconciler {
+
+    private final ConversationRepository conversationRepository;
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final ConversationMessageCounter conversationMessageCounter;
+    private final ReadMarkerBuffer readMarkerBuffer;
+    private final TransactionTemplate transactionTemplate;
+
+    // Phải lớn hơn hẳn flush-interval-ms của các buffer + thời gian transaction gửi tin dài nhất
+    @Value("${app.unread.reconcile-quiet-period-ms:300000}")
+    private long quietPeriodMs;
+
+    @Value("${app.unread.reconcile-batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${app.unread.reconcile-interval-ms:3600000}",
+            initialDelayString = "${app.unread.reconcile-initial-delay-ms:600000}")
+    public void reconcile() {
+        // Flush delta của instance này; thay đổi sau đó hay còn chờ ở instance khác nằm trong quiet period
+        long quietSince = System.currentTimeMillis() - quietPeriodMs;
+        conversationMessageCounter.flush();
+        readMarkerBuffer.flush();
+
+        int maxId = conversationRepository.findMaxId().orElse(0);
+        int conversations = 0;
+        int members = 0;
+        for (int start = 1; start <= maxId; start += batchSize) {
+            int fromId = start;
+            int toId = start + batchSize - 1;
+            int[] fixed = transactionTemplate.execute(status -> new int[]{
+                    conversationRepository.reconcileMessageCounts(fromId, toId, quietSince),
+                    conversationMemberRepository.reconcileReadCounts(fromId, toId, quietSince)});
+            conversations += fixed[0];
+            members += fixed[1];
+        }
+        if (conversations > 0 || members > 0) {
+            log.info("Reconciled message_count for {} conversations, read_count for {} conversation members",
+                    conversations, members);
+        }
+    }
+}
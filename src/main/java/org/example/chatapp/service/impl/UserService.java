@@ -17,7 +17,9 @@ import org.example.chatapp.service.enums.AuthProviderEnum;
 import org.example.chatapp.service.enums.RoleEnum;
 import org.example.chatapp.service.enums.VerificationCodeEnum;
 import org.example.chatapp.service.enums.WorkspaceRoleEnum;
+import org.example.chatapp.service.event.UserProfileChangedEvent;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -38,6 +40,7 @@ public class UserService {
     private final VerificationCodeRepository verificationCodeRepository;
     private final WorkspaceRepository workspaceRepository;
     private final WorkspaceMemberRepository workspaceMemberRepository;
+    private final ApplicationEventPublisher eventPublisher;
     @Value("${spring.security.oauth2.client.registration.google.client-id}")
     private String googleClientId;
 
@@ -178,7 +181,9 @@ public class UserService {
             user.setAvatar(request.getAvatar());
         }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserProfileChangedEvent(userId));
+        return saved;
     }
 
     public User getUserById(Integer userId) {
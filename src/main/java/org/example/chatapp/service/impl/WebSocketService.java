@@ -2,8 +2,14 @@ package org.example.chatapp.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.example.chatapp.repository.MessageRepository;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +28,25 @@ public class WebSocketService {
         );
     }
 
+    /**
+     * Gửi payload JSON đã encode sẵn (không serialize lại mỗi lần gửi).
+     */
+    public void sendJsonToConversation(Integer conversationId, byte[] json) {
+        sendJsonToConversation(conversationId, json, Map.of());
+    }
+
+    /**
+     * Như trên, kèm header STOMP (vd. seq của ConversationEventLog); client đọc qua frame.headers.
+     */
+    public void sendJsonToConversation(Integer conversationId, byte[] json, Map<String, Object> headers) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.forEach((name, value) -> accessor.setNativeHeader(name, String.valueOf(value)));
+        accessor.setLeaveMutable(true);
+        simpMessagingTemplate.send("/topic/conversation/" + conversationId,
+                MessageBuilder.createMessage(json, accessor.getMessageHeaders()));
+    }
+
 //    // ✅ Gửi riêng cho một user
 //    public void sendPrivate(Integer userId, Object payload) {
 //        simpMessagingTemplate.convertAndSendToUser(
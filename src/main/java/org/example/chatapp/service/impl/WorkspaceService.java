@@ -24,6 +24,7 @@ public class WorkspaceService {
     private final WorkspaceRepository workspaceRepository;
     private final UserRepository userRepository;
     private final WorkspaceMemberRepository memberRepository;
+    private final SidebarSnapshotCache sidebarSnapshotCache;
 
 
 
@@ -79,6 +80,7 @@ public class WorkspaceService {
         member.setRole(role != null ? role: WorkspaceRoleEnum.MEMBER);
         member.setJoinedAt(System.currentTimeMillis());
 
+        sidebarSnapshotCache.invalidateUser(newMember.getUserId());
         return memberRepository.save(member);
     }
 
@@ -96,6 +98,7 @@ public class WorkspaceService {
     @Transactional
     public void deleteWorkspace(Integer workspaceId) {
         memberRepository.deleteById(workspaceId);
+        sidebarSnapshotCache.invalidateAll();
     }
 
 
@@ -0,0 +1,74 @@
+package org.example.chatapp.ultis;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Tập int bất biến, lưu trong mảng đã sort. contains() là binary search, không cấp phát;
+ * with()/without() trả về tập mới (copy-on-write).
+ */
+public final class IntSet {
+
+    public static final IntSet EMPTY = new IntSet(new int[0]);
+
+    private final int[] values;
+
+    private IntSet(int[] sortedUnique) {
+        this.values = sortedUnique;
+    }
+
+    public static IntSet of(Collection<Integer> values) {
+        if (values.isEmpty()) {
+            return EMPTY;
+        }
+        int[] array = values.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        return new IntSet(array);
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    public IntSet with(int value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return this;
+        }
+        int insertAt = -index - 1;
+        int[] next = new int[values.length + 1];
+        System.arraycopy(values, 0, next, 0, insertAt);
+        next[insertAt] = value;
+        System.arraycopy(values, insertAt, next, insertAt + 1, values.length - insertAt);
+        return new IntSet(next);
+    }
+
+    public IntSet without(int value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return this;
+        }
+        if (values.length == 1) {
+            return EMPTY;
+        }
+        int[] next = new int[values.length - 1];
+        System.arraycopy(values, 0, next, 0, index);
+        System.arraycopy(values, index + 1, next, index, values.length - index - 1);
+        return new IntSet(next);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int[] toArray() {
+        return values.clone();
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.chatapp.ultis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Map LRU có giới hạn, chia thành nhiều stripe theo hash của khóa. Mỗi stripe là một LinkedHashMap access-order
+ * với lock riêng: get (vốn sửa thứ tự LRU) và put chỉ khóa stripe của khóa đó, không tranh một lock chung.
+ * LRU và giới hạn kích thước tính trong từng stripe (maxSize / số stripe).
+ * Mỗi stripe có version tăng sau mỗi lần xóa: kết quả load từ DB chỉ được đưa vào bằng putIfUnchanged
+ * nếu không có lần xóa nào xen giữa.
+ */
+public final class StripedLruMap<K, V> {
+
+    private static final int DEFAULT_STRIPES = 16;
+
+    private final Stripe<K, V>[] stripes;
+
+    public StripedLruMap(int maxSize) {
+        this(maxSize, DEFAULT_STRIPES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedLruMap(int maxSize, int stripeCount) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount));
+        int perStripe = Math.max(1, (maxSize + count - 1) / count);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>(perStripe);
+        }
+    }
+
+    public V get(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.map.get(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.map.put(key, value);
+        }
+    }
+
+    /**
+     * Version hiện tại của stripe chứa key; đọc trước khi load từ DB rồi truyền cho putIfUnchanged.
+     */
+    public long version(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.version;
+        }
+    }
+
+    public boolean putIfUnchanged(K key, V value, long version) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            if (stripe.version != version) {
+                return false;
+            }
+            stripe.map.put(key, value);
+            return true;
+        }
+    }
+
+    public V remove(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.version++;
+            return stripe.map.remove(key);
+        }
+    }
+
+    // Duyệt lần lượt từng stripe, mỗi lúc chỉ giữ lock của một stripe
+    public void removeIf(Predicate<? super K> keyFilter) {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.version++;
+                stripe.map.keySet().removeIf(keyFilter);
+            }
+        }
+    }
+
+    public void clear() {
+        removeIf(key -> true);
+    }
+
+    /**
+     * Chạy action với map của stripe chứa key trong khi giữ lock của stripe đó,
+     * cho các thao tác gồm nhiều bước trên cùng một khóa (đọc rồi sửa value tại chỗ).
+     * Không gọi DB hay thao tác chậm trong action.
+     */
+    public <R> R locked(K key, Function<Map<K, V>, R> action) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return action.apply(stripe.map);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe<K, V> {
+        private final LinkedHashMap<K, V> map;
+        private long version;
+
+        private Stripe(int maxSize) {
+            // access-order = true -> LinkedHashMap hoạt động như LRU
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.chatapp.config;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.example.chatapp.ChatAppApplication;
+import org.example.chatapp.entity.User;
+import org.example.chatapp.repository.UserRepository;
+import org.example.chatapp.security.jwt.JwtUtils;
+import org.example.chatapp.service.enums.RoleEnum;
+import org.example.chatapp.service.impl.WebSocketService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hai instance ứng dụng dùng chung một Artemis nhúng (STOMP acceptor) ở chế độ broker relay:
+ * message gửi từ node A phải tới client đang kết nối ở node B.
+ * DB là MySQL dùng một lần (Testcontainers), không ghi vào DB của môi trường; không có Docker thì bỏ qua.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class BrokerRelayIntegrationTest {
+
+    @Container
+    private static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0");
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void start() throws Exception {
+        int stompPort = freePort();
+        Configuration config = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + stompPort
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        broker = new EmbeddedActiveMQ().setConfiguration(config);
+        broker.start();
+
+        nodeA = startNode(stompPort);
+        nodeB = startNode(stompPort);
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void userDestinationSentOnOneNodeReachesSessionOnAnother() throws Exception {
+        User user = createUser();
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        StompSession session = connect(nodeB, user);
+        session.subscribe("/user/queue/notifications", collect(received));
+
+        SimpMessagingTemplate template = nodeA.getBean(SimpMessagingTemplate.class);
+        Map<String, Object> payload = awaitDelivery(received, () -> template.convertAndSendToUser(
+                String.valueOf(user.getUserId()), "/queue/notifications", Map.of("type", "PING")));
+
+        assertThat(payload).containsEntry("type", "PING");
+        session.disconnect();
+    }
+
+    @Test
+    void topicMessageSentOnOneNodeReachesSubscriberOnAnother() throws Exception {
+        User user = createUser();
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        StompSession session = connect(nodeB, user);
+        session.subscribe("/topic/public", collect(received));
+
+        WebSocketService webSocketService = nodeA.getBean(WebSocketService.class);
+        Map<String, Object> payload = awaitDelivery(received, () -> webSocketService.broadcast(Map.of("type", "ANNOUNCE")));
+
+        assertThat(payload).containsEntry("type", "ANNOUNCE");
+        session.disconnect();
+    }
+
+    private static ConfigurableApplicationContext startNode(int stompPort) {
+        return new SpringApplicationBuilder(ChatAppApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + mysql.getJdbcUrl(),
+                        "spring.datasource.username=" + mysql.getUsername(),
+                        "spring.datasource.password=" + mysql.getPassword(),
+                        "spring.datasource.driver-class-name=" + mysql.getDriverClassName(),
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                        "spring.liquibase.enabled=true",
+                        "spring.liquibase.change-log=classpath:db/changelog/db.changelog-master.yaml",
+                        "app.websocket.broker.mode=relay",
+                        "app.websocket.broker.relay-allow-unsynchronized-caches=true",
+                        "app.websocket.broker.relay-host=127.0.0.1",
+                        "app.websocket.broker.relay-port=" + stompPort)
+                .run();
+    }
+
+    private static User createUser() {
+        User user = new User();
+        user.setFullName("Relay Test");
+        user.setEmail("relay-" + System.nanoTime() + "@test.local");
+        user.setPasswordHash("-");
+        user.setUserType(RoleEnum.User);
+        user.setIsVerified(true);
+        return nodeA.getBean(UserRepository.class).save(user);
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, User user) throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + node.getBean(JwtUtils.class).generateTokenFromIdentifier(user));
+        String url = "ws://127.0.0.1:" + node.getEnvironment().getProperty("local.server.port") + "/ws";
+        return client.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {})
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    // SUBSCRIBE tới broker là bất đồng bộ: gửi lại cho tới khi client nhận được hoặc hết thời gian
+    private static Map<String, Object> awaitDelivery(BlockingQueue<Map<String, Object>> received, Runnable send) throws InterruptedException {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            send.run();
+            Map<String, Object> payload = received.poll(500, TimeUnit.MILLISECONDS);
+            if (payload != null) {
+                return payload;
+            }
+        }
+        return null;
+    }
+
+    private static StompFrameHandler collect(BlockingQueue<Map<String, Object>> received) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<String, Object>) payload);
+            }
+        };
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
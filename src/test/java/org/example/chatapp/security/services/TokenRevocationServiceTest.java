@@ -0,0 +1,91 @@
+package org.example.chatapp.security.services;
+
+import org.example.chatapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    private static final int USER = 1;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Test
+    void tokenIssuedInSameSecondBeforeLogoutIsRevoked() {
+        TokenRevocationService service = service(30_000);
+        // iat của JWT bị cắt xuống giây: token cấp ngay trước logout có iat = đầu giây hiện tại
+        Date issuedAt = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+        service.revokeAll(USER);
+
+        assertThat(service.isRevoked(USER, issuedAt)).isTrue();
+    }
+
+    @Test
+    void validAfterIsTheNextWholeSecond() {
+        TokenRevocationService service = service(30_000);
+        long before = System.currentTimeMillis();
+
+        service.revokeAll(USER);
+
+        ArgumentCaptor<Long> validAfter = ArgumentCaptor.forClass(Long.class);
+        verify(userRepository).updateTokensValidAfter(eq(USER), validAfter.capture());
+        assertThat(validAfter.getValue() % 1000).isZero();
+        assertThat(validAfter.getValue()).isGreaterThan(before);
+        assertThat(service.isRevoked(USER, new Date(validAfter.getValue() - 1000))).isTrue();
+        assertThat(service.isRevoked(USER, new Date(validAfter.getValue()))).isFalse();
+    }
+
+    @Test
+    void revokeAllIsVisibleWithoutReloading() {
+        TokenRevocationService service = service(30_000);
+        when(userRepository.findTokensValidAfter(USER)).thenReturn(Optional.of(0L));
+        Date issuedAt = new Date(System.currentTimeMillis() / 1000 * 1000);
+        assertThat(service.isRevoked(USER, issuedAt)).isFalse();
+
+        service.revokeAll(USER);
+
+        assertThat(service.isRevoked(USER, issuedAt)).isTrue();
+        verify(userRepository, times(1)).findTokensValidAfter(USER);
+    }
+
+    @Test
+    void cachedValidAfterIsReloadedAfterTtl() {
+        TokenRevocationService service = service(0);
+        when(userRepository.findTokensValidAfter(USER)).thenReturn(Optional.of(0L), Optional.of(Long.MAX_VALUE - 1));
+        Date issuedAt = new Date();
+
+        assertThat(service.isRevoked(USER, issuedAt)).isFalse();
+        // Instance khác đã thu hồi: thấy sau khi entry hết hạn
+        assertThat(service.isRevoked(USER, issuedAt)).isTrue();
+    }
+
+    @Test
+    void missingUserOrClaimsAreRevoked() {
+        TokenRevocationService service = service(30_000);
+        when(userRepository.findTokensValidAfter(anyInt())).thenReturn(Optional.empty());
+
+        assertThat(service.isRevoked(USER, new Date())).isTrue();
+        assertThat(service.isRevoked(null, new Date())).isTrue();
+        assertThat(service.isRevoked(USER, null)).isTrue();
+    }
+
+    private TokenRevocationService service(long ttlMs) {
+        return new TokenRevocationService(userRepository, ttlMs, 1000);
+    }
+}
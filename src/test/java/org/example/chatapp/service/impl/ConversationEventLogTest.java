@@ -0,0 +1,111 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.dto.response.ConversationEventsResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationEventLogTest {
+
+    private static final int BLOCK = 1000;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void firstEventOfNewConversationFollowsSeqZero() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn((long) BLOCK);
+        ConversationEventLog log = eventLog(10, false);
+
+        ConversationEventLog.Position first = log.append(1, "{\"n\":1}");
+        ConversationEventLog.Position second = log.append(1, "{\"n\":2}");
+
+        assertThat(first.getSeq()).isEqualTo(1);
+        assertThat(first.getPrevSeq()).isZero();
+        assertThat(second.getPrevSeq()).isEqualTo(1);
+        assertThat(log.eventsSince(1, 0).getEvents()).extracting(ConversationEventsResponse.Event::getSeq)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void replaysOnlyWhatFollowsSince() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn((long) BLOCK);
+        ConversationEventLog log = eventLog(10, false);
+        for (int i = 0; i < 3; i++) {
+            log.append(1, "{}");
+        }
+
+        ConversationEventsResponse missed = log.eventsSince(1, 1);
+        assertThat(missed.getReset()).isFalse();
+        assertThat(missed.getLatestSeq()).isEqualTo(3);
+        assertThat(missed.getEvents()).extracting(ConversationEventsResponse.Event::getSeq).containsExactly(2L, 3L);
+
+        ConversationEventsResponse upToDate = log.eventsSince(1, 3);
+        assertThat(upToDate.getReset()).isFalse();
+        assertThat(upToDate.getEvents()).isEmpty();
+
+        // seq mà instance này chưa từng cấp
+        assertThat(log.eventsSince(1, 42).getReset()).isTrue();
+    }
+
+    @Test
+    void resetsWhenGapLeftTheRing() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn((long) BLOCK);
+        ConversationEventLog log = eventLog(3, false);
+        for (int i = 0; i < 5; i++) {
+            log.append(1, "{}");
+        }
+
+        assertThat(log.eventsSince(1, 1).getReset()).isTrue();
+        assertThat(log.eventsSince(1, 2).getEvents()).extracting(ConversationEventsResponse.Event::getSeq)
+                .containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    void reservesNextBlockOnlyWhenCurrentIsUsedUp() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn((long) BLOCK, 2L * BLOCK);
+        ConversationEventLog log = eventLog(10, false);
+
+        for (int i = 0; i < BLOCK; i++) {
+            log.append(1, "{}");
+        }
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+
+        ConversationEventLog.Position next = log.append(1, "{}");
+        verify(jdbcTemplate, times(2)).execute(any(ConnectionCallback.class));
+        assertThat(next.getSeq()).isEqualTo(BLOCK + 1);
+        assertThat(next.getPrevSeq()).isEqualTo(BLOCK);
+    }
+
+    @Test
+    void afterRestartFirstEventChainsToLastPersistedSeq() {
+        // Lần chạy trước đã giữ tới seq 2000 nhưng chỉ dùng tới 1005
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(3L * BLOCK);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(1))).thenReturn(1005L);
+        ConversationEventLog log = eventLog(10, true);
+
+        ConversationEventLog.Position first = log.append(1, "{}");
+
+        assertThat(first.getSeq()).isEqualTo(2L * BLOCK + 1);
+        assertThat(first.getPrevSeq()).isEqualTo(1005);
+        assertThat(log.eventsSince(1, 1005).getEvents()).extracting(ConversationEventsResponse.Event::getSeq)
+                .containsExactly(2L * BLOCK + 1);
+    }
+
+    private ConversationEventLog eventLog(int eventsPerConversation, boolean persist) {
+        return new ConversationEventLog(jdbcTemplate, 200, eventsPerConversation, 100, BLOCK, persist, 100,
+                86400000, 5000);
+    }
+}
@@ -0,0 +1,179 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.repository.ConversationMemberRepository;
+import org.example.chatapp.service.event.MembershipChangedEvent;
+import org.example.chatapp.ultis.IntSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationMembershipIndexTest {
+
+    private static final int CONVERSATION = 10;
+
+    @Mock
+    private ConversationMemberRepository conversationMemberRepository;
+
+    @Test
+    void loadsOnceThenServesFromMemory() {
+        ConversationMembershipIndex index = index(10);
+        when(conversationMemberRepository.findActiveUserIds(CONVERSATION)).thenReturn(List.of(1, 2));
+
+        assertThat(index.isMember(CONVERSATION, 1)).isTrue();
+        assertThat(index.isMember(CONVERSATION, 3)).isFalse();
+
+        verify(conversationMemberRepository, times(1)).findActiveUserIds(CONVERSATION);
+    }
+
+    @Test
+    void joinDuringLoadIsNotLostToStaleResult() {
+        ConversationMembershipIndex index = index(10);
+        // User 3 join (commit + event) trong lúc đang đọc DB: kết quả đọc được chưa có user 3
+        when(conversationMemberRepository.findActiveUserIds(CONVERSATION))
+                .thenAnswer(invocation -> {
+                    index.onMembershipChanged(new MembershipChangedEvent(CONVERSATION, List.of(3), true));
+                    return List.of(1, 2);
+                })
+                .thenReturn(List.of(1, 2, 3));
+
+        assertThat(index.isMember(CONVERSATION, 3)).isFalse();
+        assertThat(index.isMember(CONVERSATION, 3)).isTrue();
+        assertThat(index.isMember(CONVERSATION, 3)).isTrue();
+
+        verify(conversationMemberRepository, times(2)).findActiveUserIds(CONVERSATION);
+    }
+
+    @Test
+    void leaveDuringLoadIsNotLostToStaleResult() {
+        ConversationMembershipIndex index = index(10);
+        when(conversationMemberRepository.findActiveConversationIds(1))
+                .thenAnswer(invocation -> {
+                    index.onMembershipChanged(new MembershipChangedEvent(CONVERSATION, List.of(1), false));
+                    return List.of(CONVERSATION, 11);
+                })
+                .thenReturn(List.of(11));
+
+        assertThat(index.conversationsOf(1).contains(CONVERSATION)).isTrue();
+        assertThat(index.conversationsOf(1).contains(CONVERSATION)).isFalse();
+        assertThat(index.conversationsOf(1).contains(CONVERSATION)).isFalse();
+    }
+
+    @Test
+    void eventsUpdateCachedEntriesInPlace() {
+        ConversationMembershipIndex index = index(10);
+        when(conversationMemberRepository.findActiveUserIds(CONVERSATION)).thenReturn(List.of(1, 2));
+        when(conversationMemberRepository.findActiveConversationIds(2)).thenReturn(List.of(CONVERSATION));
+        index.membersOf(CONVERSATION);
+        index.conversationsOf(2);
+
+        index.onMembershipChanged(new MembershipChangedEvent(CONVERSATION, List.of(3), true));
+        index.onMembershipChanged(new MembershipChangedEvent(CONVERSATION, List.of(2), false));
+
+        assertThat(index.membersOf(CONVERSATION).toArray()).containsExactly(1, 3);
+        assertThat(index.conversationsOf(2).isEmpty()).isTrue();
+        verify(conversationMemberRepository, times(1)).findActiveUserIds(CONVERSATION);
+        verify(conversationMemberRepository, times(1)).findActiveConversationIds(2);
+    }
+
+    @Test
+    void evictsLeastRecentlyReadConversation() throws InterruptedException {
+        ConversationMembershipIndex index = index(2);
+        when(conversationMemberRepository.findActiveUserIds(anyInt())).thenReturn(List.of(1));
+
+        index.membersOf(1);
+        index.membersOf(2);
+        Thread.sleep(1);
+        index.membersOf(1);
+        index.membersOf(3);
+
+        index.membersOf(1);
+        verify(conversationMemberRepository, times(1)).findActiveUserIds(1);
+        index.membersOf(2);
+        verify(conversationMemberRepository, times(2)).findActiveUserIds(2);
+    }
+
+    @Test
+    void evictConversationForcesReload() {
+        ConversationMembershipIndex index = index(10);
+        when(conversationMemberRepository.findActiveUserIds(CONVERSATION)).thenReturn(List.of(1), List.of(1, 2));
+        index.membersOf(CONVERSATION);
+
+        index.evictConversation(CONVERSATION);
+
+        assertThat(index.isMember(CONVERSATION, 2)).isTrue();
+    }
+
+    @Test
+    void concurrentLoadsAndChangesConvergeToCommittedMembership() throws Exception {
+        ConversationMembershipIndex index = index(10);
+        // "DB": thay đổi được commit vào đây trước rồi mới phát event, như AFTER_COMMIT
+        Set<Integer> committed = ConcurrentHashMap.newKeySet();
+        when(conversationMemberRepository.findActiveUserIds(CONVERSATION))
+                .thenAnswer(invocation -> new ArrayList<>(committed));
+
+        int writers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch done = new CountDownLatch(writers);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            // Reader liên tục bỏ cache để các lần load chạy xen với thay đổi
+            executor.execute(() -> {
+                while (running.get()) {
+                    index.membersOf(CONVERSATION);
+                    index.evictConversation(CONVERSATION);
+                    index.membersOf(CONVERSATION);
+                }
+            });
+            for (int w = 0; w < writers; w++) {
+                int userId = w + 1;
+                executor.execute(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        boolean active = ThreadLocalRandom.current().nextBoolean();
+                        synchronized (committed) {
+                            if (active) {
+                                committed.add(userId);
+                            } else {
+                                committed.remove(userId);
+                            }
+                            index.onMembershipChanged(new MembershipChangedEvent(CONVERSATION, List.of(userId), active));
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            running.set(false);
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        }
+
+        IntSet members = index.membersOf(CONVERSATION);
+        for (int userId = 1; userId <= writers; userId++) {
+            assertThat(members.contains(userId)).as("user %d", userId).isEqualTo(committed.contains(userId));
+        }
+    }
+
+    private ConversationMembershipIndex index(int maxEntries) {
+        return new ConversationMembershipIndex(conversationMemberRepository, maxEntries, maxEntries);
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.repository.HiddenMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HiddenMessageCacheTest {
+
+    @Mock
+    private HiddenMessageRepository hiddenMessageRepository;
+
+    @Test
+    void cachesLoadedSet() {
+        HiddenMessageCache cache = cache(10, 100, 1000);
+        hidden(1, 5, 7);
+
+        assertThat(cache.get(1).contains(5)).isTrue();
+        assertThat(cache.get(1).contains(7)).isTrue();
+
+        verify(hiddenMessageRepository, times(1)).findHiddenMessageIdsByUserId(1);
+    }
+
+    @Test
+    void loadRacingWithHideIsNotCached() {
+        HiddenMessageCache cache = cache(10, 100, 1000);
+        lenient().when(hiddenMessageRepository.countByUser_UserId(anyInt())).thenReturn(0L);
+        // Tin 9 bị ẩn (commit) trong lúc đang đọc DB: kết quả đọc được là tập cũ
+        when(hiddenMessageRepository.findHiddenMessageIdsByUserId(1))
+                .thenAnswer(invocation -> {
+                    cache.add(1, 9);
+                    return List.of(5);
+                })
+                .thenReturn(List.of(5, 9));
+
+        assertThat(cache.get(1).contains(9)).isFalse();
+        assertThat(cache.get(1).contains(9)).isTrue();
+        assertThat(cache.get(1).contains(9)).isTrue();
+
+        verify(hiddenMessageRepository, times(2)).findHiddenMessageIdsByUserId(1);
+    }
+
+    @Test
+    void loadRacingWithEvictIsNotCached() {
+        HiddenMessageCache cache = cache(10, 100, 1000);
+        lenient().when(hiddenMessageRepository.countByUser_UserId(anyInt())).thenReturn(0L);
+        when(hiddenMessageRepository.findHiddenMessageIdsByUserId(1))
+                .thenAnswer(invocation -> {
+                    cache.evict(1);
+                    return List.of(5);
+                })
+                .thenReturn(List.of());
+
+        assertThat(cache.get(1).contains(5)).isTrue();
+        assertThat(cache.get(1).isEmpty()).isTrue();
+    }
+
+    @Test
+    void addUpdatesCachedSetOnly() {
+        HiddenMessageCache cache = cache(10, 100, 1000);
+        hidden(1, 5);
+        cache.get(1);
+
+        cache.add(1, 6);
+        cache.add(2, 6);
+
+        assertThat(cache.get(1).contains(6)).isTrue();
+        verify(hiddenMessageRepository, times(1)).findHiddenMessageIdsByUserId(1);
+        verify(hiddenMessageRepository, never()).findHiddenMessageIdsByUserId(2);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUser() {
+        HiddenMessageCache cache = cache(2, 100, 1000);
+        hidden(1, 1);
+        hidden(2, 2);
+        hidden(3, 3);
+
+        cache.get(1);
+        cache.get(2);
+        cache.get(1);
+        cache.get(3);
+
+        cache.get(1);
+        verify(hiddenMessageRepository, times(1)).findHiddenMessageIdsByUserId(1);
+        cache.get(2);
+        verify(hiddenMessageRepository, times(2)).findHiddenMessageIdsByUserId(2);
+    }
+
+    @Test
+    void evictsEldestWhenTotalIdsExceedBudget() {
+        HiddenMessageCache cache = cache(10, 100, 3);
+        hidden(1, 1, 2);
+        hidden(2, 3, 4);
+
+        cache.get(1);
+        cache.get(2);
+        cache.get(2);
+        cache.get(1);
+
+        verify(hiddenMessageRepository, times(1)).findHiddenMessageIdsByUserId(2);
+        verify(hiddenMessageRepository, times(2)).findHiddenMessageIdsByUserId(1);
+    }
+
+    @Test
+    void userOverPerUserLimitIsNotCached() {
+        HiddenMessageCache cache = cache(10, 2, 1000);
+        when(hiddenMessageRepository.countByUser_UserId(1)).thenReturn(3L);
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(1)).isNull();
+
+        verify(hiddenMessageRepository, never()).findHiddenMessageIdsByUserId(1);
+    }
+
+    @Test
+    void addPastPerUserLimitDropsCachedSet() {
+        HiddenMessageCache cache = cache(10, 2, 1000);
+        hidden(1, 1, 2);
+        cache.get(1);
+
+        cache.add(1, 3);
+        when(hiddenMessageRepository.countByUser_UserId(1)).thenReturn(3L);
+
+        assertThat(cache.get(1)).isNull();
+    }
+
+    private HiddenMessageCache cache(int maxUsers, int maxIdsPerUser, long maxTotalIds) {
+        return new HiddenMessageCache(hiddenMessageRepository, maxUsers, maxIdsPerUser, maxTotalIds);
+    }
+
+    private void hidden(int userId, Integer... messageIds) {
+        lenient().when(hiddenMessageRepository.countByUser_UserId(userId)).thenReturn((long) messageIds.length);
+        lenient().when(hiddenMessageRepository.findHiddenMessageIdsByUserId(userId)).thenReturn(List.of(messageIds));
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.dto.response.MessageResponse;
+import org.example.chatapp.entity.Conversation;
+import org.example.chatapp.entity.Message;
+import org.example.chatapp.entity.User;
+import org.example.chatapp.repository.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class MessageHydrationServiceTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private MessageReactionRepository messageReactionRepository;
+    @Mock
+    private MessageMentionRepository messageMentionRepository;
+    @Mock
+    private AttachmentRepository attachmentRepository;
+    @Mock
+    private PinnedMessageRepository pinnedMessageRepository;
+    @Mock
+    private FileService fileService;
+    @Mock
+    private ThreadReplyCounter threadReplyCounter;
+
+    @InjectMocks
+    private MessageHydrationService messageHydrationService;
+
+    @Test
+    void hydrateKeepsPageOrder() {
+        List<Message> page = messages(5);
+
+        List<MessageResponse> responses = messageHydrationService.hydrate(page);
+
+        assertThat(responses).extracting(MessageResponse::getId)
+                .containsExactly(1, 2, 3, 4, 5);
+        assertThat(responses).extracting(MessageResponse::getSenderName)
+                .containsOnly("User 1", "User 2", "User 3");
+        assertThat(responses).extracting(MessageResponse::getIsPinned)
+                .containsOnly(false);
+    }
+
+    private List<Message> messages(int count) {
+        Conversation conversation = new Conversation();
+        conversation.setId(1);
+
+        Message parent = new Message();
+        parent.setId(10_000);
+        parent.setContent("parent");
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            User sender = new User();
+            sender.setUserId(i % 3 + 1);
+            sender.setFullName("User " + sender.getUserId());
+
+            Message message = new Message();
+            message.setId(i);
+            message.setContent("message " + i);
+            message.setCreatedAt((long) i);
+            message.setConversation(conversation);
+            message.setSender(sender);
+            message.setParentMessage(parent);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,179 @@
+package org.example.chatapp.service.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.chatapp.ChatAppApplication;
+import org.example.chatapp.dto.request.CreateMessageRequest;
+import org.example.chatapp.entity.Conversation;
+import org.example.chatapp.entity.ConversationMember;
+import org.example.chatapp.entity.Message;
+import org.example.chatapp.entity.User;
+import org.example.chatapp.entity.Workspace;
+import org.example.chatapp.repository.ConversationMemberRepository;
+import org.example.chatapp.repository.ConversationRepository;
+import org.example.chatapp.repository.MessageRepository;
+import org.example.chatapp.repository.UserRepository;
+import org.example.chatapp.repository.WorkspaceRepository;
+import org.example.chatapp.service.enums.ConversationEnum;
+import org.example.chatapp.service.enums.ConversationRoleEnum;
+import org.example.chatapp.service.enums.RoleEnum;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đếm statement SQL thật trên MySQL dùng một lần (Testcontainers); không có Docker thì bỏ qua.
+ * - Gửi một tin text thường (không reply/thread/attachment/mention) khi SenderContext đã nằm trong cache
+ *   và block id đã được cấp: transaction gửi chỉ có đúng một INSERT vào messages, không SELECT nào.
+ * - MessageHydrationService.hydrate: số statement (Hibernate statistics) không tăng theo kích thước trang.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class MessageStatementsIntegrationTest {
+
+    @Container
+    private static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0");
+
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void start() {
+        context = new SpringApplicationBuilder(ChatAppApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + mysql.getJdbcUrl(),
+                        "spring.datasource.username=" + mysql.getUsername(),
+                        "spring.datasource.password=" + mysql.getPassword(),
+                        "spring.datasource.driver-class-name=" + mysql.getDriverClassName(),
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                        "spring.jpa.properties.hibernate.generate_statistics=true",
+                        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                                + RecordingStatementInspector.class.getName(),
+                        "spring.liquibase.enabled=true",
+                        "spring.liquibase.change-log=classpath:db/changelog/db.changelog-master.yaml")
+                .run();
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void plainSendIsOneInsertAndNoSelects() {
+        ConversationMember member = createMember();
+        SenderContext sender = context.getBean(SenderContextCache.class)
+                .get(member.getUser().getUserId(), member.getConversation().getId());
+        MessageService messageService = context.getBean(MessageService.class);
+        // Lần gửi đầu lấy block id từ id_generators
+        messageService.createMessage(request("warm-up"), sender);
+
+        List<String> statements = RecordingStatementInspector.record(
+                () -> messageService.createMessage(request("hello"), sender));
+
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0)).startsWithIgnoringCase("insert into messages");
+    }
+
+    @Test
+    void hydrationStatementCountStaysConstantAsPageSizeGrows() {
+        ConversationMember member = createMember();
+        SenderContext sender = context.getBean(SenderContextCache.class)
+                .get(member.getUser().getUserId(), member.getConversation().getId());
+        List<Integer> ids = sendReplies(sender, 200);
+
+        long singleMessageStatements = hydrationStatements(ids.subList(0, 1));
+        long fullPageStatements = hydrationStatements(ids.subList(0, 50));
+        long largePageStatements = hydrationStatements(ids);
+
+        assertThat(singleMessageStatements).isPositive();
+        assertThat(fullPageStatements).isEqualTo(singleMessageStatements);
+        assertThat(largePageStatements).isEqualTo(singleMessageStatements);
+    }
+
+    // Tin đầu là tin gốc, các tin sau reply tin đó để hydrate phải nạp cả parent
+    private static List<Integer> sendReplies(SenderContext sender, int count) {
+        MessageService messageService = context.getBean(MessageService.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        Integer rootId = transactionTemplate.execute(status -> messageService.createMessages(
+                List.of(new PendingMessage(request("root"), sender, 0)))).get(0).getId();
+
+        List<PendingMessage> replies = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            CreateMessageRequest reply = request("reply " + i);
+            reply.setParentMessageId(rootId);
+            replies.add(new PendingMessage(reply, sender, 0));
+        }
+        List<Integer> ids = new ArrayList<>(List.of(rootId));
+        transactionTemplate.execute(status -> messageService.createMessages(replies))
+                .forEach(response -> ids.add(response.getId()));
+        return ids;
+    }
+
+    // Chỉ đếm statement của hydrate, không tính lần load các Message cần hydrate
+    private static long hydrationStatements(List<Integer> ids) {
+        Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        return context.getBean(TransactionTemplate.class).execute(status -> {
+            List<Message> page = context.getBean(MessageRepository.class).findAllById(ids);
+            assertThat(page).hasSize(ids.size());
+            statistics.clear();
+            context.getBean(MessageHydrationService.class).hydrate(page);
+            return statistics.getPrepareStatementCount();
+        });
+    }
+
+    private static CreateMessageRequest request(String content) {
+        CreateMessageRequest request = new CreateMessageRequest();
+        request.setContent(content);
+        return request;
+    }
+
+    private static ConversationMember createMember() {
+        long now = System.currentTimeMillis();
+        User user = new User();
+        user.setFullName("Statement Test");
+        user.setEmail("statements-" + System.nanoTime() + "@test.local");
+        user.setPasswordHash("-");
+        user.setUserType(RoleEnum.User);
+        user.setIsVerified(true);
+        user = context.getBean(UserRepository.class).save(user);
+
+        Workspace workspace = new Workspace();
+        workspace.setName("Statement Test");
+        workspace.setCreatedAt(now);
+        workspace.setCreator(user);
+        workspace = context.getBean(WorkspaceRepository.class).save(workspace);
+
+        Conversation conversation = new Conversation();
+        conversation.setName("statements");
+        conversation.setType(ConversationEnum.CHANNEL);
+        conversation.setIsPrivate(false);
+        conversation.setCreatedAt(now);
+        conversation.setWorkspace(workspace);
+        conversation.setCreator(user);
+        conversation = context.getBean(ConversationRepository.class).save(conversation);
+
+        ConversationMember member = new ConversationMember();
+        member.setRole(ConversationRoleEnum.MEMBER);
+        member.setIsNotifEnabled(true);
+        member.setJoinedAt(now);
+        member.setConversation(conversation);
+        member.setUser(user);
+        return context.getBean(ConversationMemberRepository.class).save(member);
+    }
+}
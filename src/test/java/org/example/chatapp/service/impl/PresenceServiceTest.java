@@ -0,0 +1,139 @@
+package org.example.chatapp.service.impl;
+
+import org.example.chatapp.service.event.UserNotificationEvent;
+import org.example.chatapp.ultis.IntSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceServiceTest {
+
+    private static final int WATCHER = 1;
+    private static final int USER = 2;
+
+    @Mock
+    private ConversationMembershipIndex membershipIndex;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final List<UserNotificationEvent> published = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // WATCHER và USER cùng ở conversation 10
+        lenient().when(membershipIndex.conversationsOf(anyInt())).thenReturn(IntSet.of(List.of(10)));
+        lenient().when(membershipIndex.membersOf(10)).thenReturn(IntSet.of(List.of(WATCHER, USER)));
+        lenient().doAnswer(invocation -> published.add(invocation.getArgument(0)))
+                .when(eventPublisher).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void connectIsAnnouncedOnce() {
+        PresenceService presence = presenceWithWatcher(60_000);
+
+        presence.connect(USER, "s1");
+        presence.flush();
+        presence.connect(USER, "s2");
+        presence.flush();
+
+        assertThat(statusesSentTo(WATCHER)).containsExactly(Map.of("userId", USER, "status", PresenceService.ONLINE));
+    }
+
+    @Test
+    void reconnectWithinGraceIsNotBroadcast() {
+        PresenceService presence = presenceWithWatcher(60_000);
+        presence.connect(USER, "s1");
+        presence.flush();
+        published.clear();
+
+        presence.disconnect(USER, "s1");
+        presence.flush();
+        assertThat(presence.snapshot(List.of(USER))).containsEntry(USER, PresenceService.ONLINE);
+
+        presence.connect(USER, "s2");
+        presence.flush();
+
+        assertThat(published).isEmpty();
+        assertThat(presence.snapshot(List.of(USER))).containsEntry(USER, PresenceService.ONLINE);
+    }
+
+    @Test
+    void offlineIsBroadcastOnceGraceHasPassed() {
+        PresenceService presence = presenceWithWatcher(0);
+        presence.connect(USER, "s1");
+        presence.flush();
+        published.clear();
+
+        presence.disconnect(USER, "s1");
+        presence.flush();
+        presence.flush();
+
+        assertThat(statusesSentTo(WATCHER)).containsExactly(Map.of("userId", USER, "status", PresenceService.OFFLINE));
+        assertThat(presence.snapshot(List.of(USER))).containsEntry(USER, PresenceService.OFFLINE);
+    }
+
+    @Test
+    void connectAndDisconnectWithinOneFlushIsNeverBroadcast() {
+        PresenceService presence = presenceWithWatcher(0);
+
+        presence.connect(USER, "s1");
+        presence.disconnect(USER, "s1");
+        presence.flush();
+
+        assertThat(published).isEmpty();
+        assertThat(presence.snapshot(List.of(USER))).containsEntry(USER, PresenceService.OFFLINE);
+    }
+
+    @Test
+    void userStaysOnlineWhileAnySessionRemains() {
+        PresenceService presence = presenceWithWatcher(0);
+        presence.connect(USER, "s1");
+        presence.connect(USER, "s2");
+        presence.flush();
+        published.clear();
+
+        // DISCONNECT frame rồi đóng socket: cùng một session bị báo hai lần
+        presence.disconnect(USER, "s1");
+        presence.disconnect(USER, "s1");
+        presence.flush();
+
+        assertThat(published).isEmpty();
+        assertThat(presence.snapshot(List.of(USER))).containsEntry(USER, PresenceService.ONLINE);
+    }
+
+    // WATCHER đã online và đã được announce, các thông báo sau đó được ghi vào published
+    private PresenceService presenceWithWatcher(long offlineGraceMs) {
+        PresenceService presence = new PresenceService(membershipIndex, eventPublisher, offlineGraceMs);
+        presence.connect(WATCHER, "watcher");
+        presence.flush();
+        published.clear();
+        return presence;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> statusesSentTo(int recipient) {
+        List<Map<String, Object>> statuses = new ArrayList<>();
+        for (UserNotificationEvent event : published) {
+            if (event.getUserId() == recipient) {
+                Map<String, Object> payload = (Map<String, Object>) event.getPayload();
+                assertThat(payload).containsEntry("type", "PRESENCE_UPDATE");
+                statuses.addAll((List<Map<String, Object>>) payload.get("statuses"));
+            }
+        }
+        return statuses;
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.chatapp.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ReadMarkerBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ReadMarkerBuffer readMarkerBuffer;
+    // Mỗi lần batchUpdate: danh sách (conversationId, userId, messageId) đã ghi
+    private final List<List<int[]>> writes = new ArrayList<>();
+    private boolean failNextWrite;
+
+    @BeforeEach
+    void setUp() {
+        readMarkerBuffer = new ReadMarkerBuffer(jdbcTemplate, transactionTemplate);
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        doAnswer(invocation -> {
+            if (failNextWrite) {
+                failNextWrite = false;
+                throw new QueryTimeoutException("timeout");
+            }
+            writes.add(written(invocation.getArgument(1), invocation.getArgument(3)));
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void keepsHighestMarkerPerConversationAndUser() {
+        readMarkerBuffer.mark(1, 10, 5);
+        readMarkerBuffer.mark(1, 10, 9);
+        readMarkerBuffer.mark(1, 10, 7);
+        readMarkerBuffer.mark(2, 10, 3);
+
+        readMarkerBuffer.flush();
+
+        assertThat(writes).hasSize(1);
+        assertThat(writes.get(0)).containsExactlyInAnyOrder(new int[]{1, 10, 9}, new int[]{2, 10, 3});
+    }
+
+    @Test
+    void flushWritesEachMarkerOnce() {
+        readMarkerBuffer.mark(1, 10, 5);
+
+        readMarkerBuffer.flush();
+        readMarkerBuffer.flush();
+
+        assertThat(writes).hasSize(1);
+    }
+
+    @Test
+    void failedFlushKeepsHighestMarkerForRetry() {
+        readMarkerBuffer.mark(1, 10, 9);
+        failNextWrite = true;
+        readMarkerBuffer.flush();
+        assertThat(writes).isEmpty();
+
+        // Marker cũ hơn đến sau lần flush lỗi không được đè marker đang chờ ghi lại
+        readMarkerBuffer.mark(1, 10, 4);
+        readMarkerBuffer.flush();
+
+        assertThat(writes).hasSize(1);
+        assertThat(writes.get(0)).containsExactly(new int[]{1, 10, 9});
+    }
+
+    @Test
+    void flushUserWritesOnlyThatUser() {
+        readMarkerBuffer.mark(1, 10, 5);
+        readMarkerBuffer.mark(1, 11, 6);
+
+        readMarkerBuffer.flushUser(10);
+        assertThat(writes).hasSize(1);
+        assertThat(writes.get(0)).containsExactly(new int[]{1, 10, 5});
+
+        readMarkerBuffer.flush();
+        assertThat(writes).hasSize(2);
+        assertThat(writes.get(1)).containsExactly(new int[]{1, 11, 6});
+    }
+
+    private static <T> List<int[]> written(Collection<T> batch, ParameterizedPreparedStatementSetter<T> setter)
+            throws Exception {
+        List<int[]> rows = new ArrayList<>();
+        for (T marker : batch) {
+            PreparedStatement ps = mock(PreparedStatement.class);
+            setter.setValues(ps, marker);
+            // Tham số int của FLUSH_SQL theo thứ tự: messageId, messageId, conversationId, userId, ...
+            ArgumentCaptor<Integer> ints = ArgumentCaptor.forClass(Integer.class);
+            verify(ps, atLeastOnce()).setInt(anyInt(), ints.capture());
+            List<Integer> values = ints.getAllValues();
+            rows.add(new int[]{values.get(2), values.get(3), values.get(0)});
+        }
+        return rows;
+    }
+}
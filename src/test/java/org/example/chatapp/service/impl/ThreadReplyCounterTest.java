@@ -0,0 +1,165 @@
+package org.example.chatapp.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class ThreadReplyCounterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ThreadReplyCounter threadReplyCounter;
+    // Tổng delta đã ghi xuống DB theo threadId
+    private final Map<Integer, Long> written = new ConcurrentHashMap<>();
+    private volatile boolean failNextWrite;
+
+    @BeforeEach
+    void setUp() {
+        threadReplyCounter = new ThreadReplyCounter(jdbcTemplate, transactionTemplate);
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().doAnswer(invocation -> {
+            if (failNextWrite) {
+                failNextWrite = false;
+                throw new QueryTimeoutException("timeout");
+            }
+            List<Object[]> batch = invocation.getArgument(1);
+            for (Object[] row : batch) {
+                written.merge((Integer) row[1], (Long) row[0], Long::sum);
+            }
+            return new int[batch.size()];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void flushBetweenCommitAndAfterCommitDoesNotLoseReply() {
+        // Reply đã commit trong DB nhưng afterCommit chưa chạy khi flush chạy
+        TransactionSynchronizationManager.initSynchronization();
+        threadReplyCounter.add(1, 1);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        threadReplyCounter.flush();
+        assertThat(written).isEmpty();
+        assertThat(threadReplyCounter.pending(1)).isZero();
+
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertThat(threadReplyCounter.pending(1)).isEqualTo(1);
+
+        threadReplyCounter.flush();
+        assertThat(written).containsEntry(1, 1L);
+        assertThat(threadReplyCounter.pending(1)).isZero();
+    }
+
+    @Test
+    void rolledBackReplyIsNeverCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        threadReplyCounter.add(1, 1);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        threadReplyCounter.flush();
+
+        assertThat(written).isEmpty();
+        assertThat(threadReplyCounter.pending(1)).isZero();
+    }
+
+    @Test
+    void failedFlushKeepsDeltaForNextFlush() {
+        threadReplyCounter.add(1, 2);
+        failNextWrite = true;
+        threadReplyCounter.flush();
+        assertThat(written).isEmpty();
+        assertThat(threadReplyCounter.pending(1)).isEqualTo(2);
+
+        threadReplyCounter.add(1, 1);
+        threadReplyCounter.flush();
+
+        assertThat(written).containsEntry(1, 3L);
+        assertThat(threadReplyCounter.pending(1)).isZero();
+    }
+
+    @Test
+    void concurrentAddsAndFlushesNeitherLoseNorDoubleCount() throws Exception {
+        int threads = 4;
+        int addsPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean adding = new AtomicBoolean(true);
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    // Ít thread id để entry liên tục bị drain rồi tạo lại trong lúc các thread khác đang add
+                    for (int i = 0; i < addsPerThread; i++) {
+                        threadReplyCounter.add(i % 8, 1);
+                    }
+                });
+            }
+            executor.shutdown();
+            Thread flusher = new Thread(() -> {
+                while (adding.get()) {
+                    threadReplyCounter.flush();
+                }
+            });
+            flusher.start();
+            start.countDown();
+            assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+            adding.set(false);
+            flusher.join();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        threadReplyCounter.flush();
+
+        long total = written.values().stream().mapToLong(Long::longValue).sum();
+        assertThat(total).isEqualTo((long) threads * addsPerThread);
+    }
+}